@@ -2,58 +2,128 @@ package gitlet;
 
 import java.io.Serializable;
 import java.io.File;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.TreeSet;
 
 /** The add command.
  *  @author Ryan Brill
  */
 class AddCommand implements Command, Serializable {
 
-    /** Add the file with name F. */
-    AddCommand(String F) {
-        fileName = F;
+    /** Add the files named by OPERANDS: file names, directory names for
+     *  every file beneath them, "." for every file in the working
+     *  directory, or glob patterns such as "*.txt". */
+    AddCommand(String[] operands) {
+        this.operands = operands;
     }
 
     /** Return true iff N is the proper number of operands for this command. */
     public boolean properNumOperands(int n) {
-        return n == 2;
+        return n >= 2;
     }
 
-    /** Execute this command, using TRACKER. */
+    /** Execute this command, using TRACKER.  Every file named is found
+     *  before any is stored, and all are stored together; one deleted in
+     *  between is skipped. */
     public void execute(Tracker tracker) {
-        if (!(new File(Utils.workingDirPath(fileName))).exists()) {
-            System.out.println("File does not exist.");
-            System.exit(0);
+        TreeSet<String> fileNames = new TreeSet<>();
+        for (String operand : operands) {
+            fileNames.addAll(expand(operand));
         }
 
         String currentCommitSha = tracker.getCurrentBranchReference();
-        Commit currentCommit = Utils.readObject(
-                new File(Utils.gitletPath(currentCommitSha)),
-                Commit.class);
+        Commit currentCommit = Utils.shaToCommit(currentCommitSha);
 
-        byte[] currentContents = Utils.readContents(
-                new File(Utils.workingDirPath(fileName)));
+        HashMap<String, String> blobShas =
+            StatCache.get().storeAll(fileNames);
+        for (String fileName : fileNames) {
+            if (blobShas.containsKey(fileName)) {
+                add(tracker, currentCommit, fileName, blobShas.get(fileName));
+            }
+        }
+    }
+
+    /** Return the names of the working files OPERAND names. */
+    private TreeSet<String> expand(String operand) {
+        String name = normalize(operand);
+        TreeSet<String> fileNames = new TreeSet<>();
+        if (name.equals("")) {
+            fileNames.addAll(Utils.workingDirFileNames());
+        } else if (isGlob(name)) {
+            PathMatcher matcher =
+                FileSystems.getDefault().getPathMatcher("glob:" + name);
+            for (String fileName : Utils.workingDirFileNames()) {
+                if (matcher.matches(Paths.get(fileName))) {
+                    fileNames.add(fileName);
+                }
+            }
+        } else if ((new File(Utils.workingDirPath(name))).isFile()) {
+            fileNames.add(name);
+        } else if ((new File(Utils.workingDirPath(name))).isDirectory()) {
+            String prefix = name + Tree.SEPARATOR;
+            for (String fileName : Utils.workingDirFileNames()) {
+                if (fileName.startsWith(prefix)) {
+                    fileNames.add(fileName);
+                }
+            }
+        }
+        if (fileNames.isEmpty()) {
+            throw Utils.error("File does not exist.");
+        }
+        return fileNames;
+    }
 
-        Blob currentBlob = new Blob(currentContents);
-        String currentBlobSha = Utils.sha1(Utils.serialize(currentBlob));
+    /** Return OPERAND as a path from the working directory, its names
+     *  joined by Tree.SEPARATOR, or "" if it names the working directory
+     *  itself.  OPERAND must name nothing outside the working directory
+     *  or within .gitlet. */
+    static String normalize(String operand) {
+        Path root = Paths.get("").toAbsolutePath();
+        Path path = root.resolve(operand).normalize();
+        if (path.equals(root)) {
+            return "";
+        }
+        if (!path.startsWith(root)) {
+            throw Utils.error("File is outside the working directory.");
+        }
+        Path relative = root.relativize(path);
+        if (relative.getName(0).toString().equals(".gitlet")) {
+            throw Utils.error("File is within the repository.");
+        }
+        return relative.toString().replace(File.separator, Tree.SEPARATOR);
+    }
+
+    /** Return true iff OPERAND is a glob pattern rather than a name. */
+    private static boolean isGlob(String operand) {
+        return operand.chars().anyMatch(c -> "*?[{".indexOf(c) >= 0);
+    }
+
+    /** Using TRACKER, stage FILENAME, whose contents are the blob with
+     *  CURRENTBLOBSHA, for addition to the commit after CURRENTCOMMIT. */
+    private void add(Tracker tracker, Commit currentCommit, String fileName,
+                     String currentBlobSha) {
         String previousBlobSha = currentCommit.getBlobReference(fileName);
         if (currentBlobSha.equals(previousBlobSha)) {
-            tracker.removeFromStage(fileName);
+            if (tracker.isStaged(fileName)) {
+                tracker.removeFromStage(fileName);
+            }
             if (tracker.isStagedForRemoval(fileName)) {
                 tracker.cancelRemoval(fileName);
             }
             return;
         }
 
-        Utils.writeObject(currentBlob);
-
         if (tracker.isStagedForRemoval(fileName)) {
             tracker.cancelRemoval(fileName);
         } else {
             tracker.stage(fileName, currentBlobSha);
         }
-
     }
 
-    /** The name of the file to be added. */
-    private String fileName;
+    /** The operands naming the files to be added. */
+    private String[] operands;
 }
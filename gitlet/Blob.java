@@ -1,11 +1,9 @@
 package gitlet;
 
-import java.io.Serializable;
-
 /** Blob: the byte representation of a file.
  *  @author Ryan Brill*/
 
-public class Blob implements Serializable {
+public class Blob {
 
     /** This blob contains the contents in BYTESTREAM. */
     Blob(byte[] byteStream) {
@@ -20,8 +20,7 @@ class BranchCommand implements Command, Serializable {
     /** Execute this command, using TRACKER. */
     public void execute(Tracker tracker) {
         if (tracker.branchNameExists(branchName)) {
-            System.out.println("A branch with that name already exists.");
-            System.exit(0);
+            throw Utils.error("A branch with that name already exists.");
         }
         tracker.addBranch(branchName);
     }
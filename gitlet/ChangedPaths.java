@@ -0,0 +1,289 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.zip.CRC32;
+
+/** Bloom filters of the paths each commit changed, kept in
+ *  .gitlet/changed-paths, so that a walk looking for the commits that
+ *  touched a file need only read those whose filter holds it.
+ *  @author Ryan Brill
+ */
+class ChangedPaths {
+
+    /** Name of the filter file within .gitlet. */
+    static final String FILTER_FILE = "changed-paths";
+
+    /** Bits of a filter for each path it holds. */
+    static final int BITS_PER_PATH = 10;
+
+    /** Number of bits each path sets. */
+    static final int HASHES = 7;
+
+    /** Fewest bits in a filter. */
+    static final int MIN_BITS = 64;
+
+    /** Most paths a filter holds; a commit that changed more has an empty
+     *  filter. */
+    static final int MAX_PATHS = 512;
+
+    /** First four bytes of the filter file: "GCPB". */
+    private static final int MAGIC = 0x47435042;
+
+    /** The format version written. */
+    private static final int VERSION = 1;
+
+    /** Length of the file's header: its magic and version. */
+    private static final int HEADER_SIZE = 8;
+
+    /** Length of a filter's header: the commit's SHA, and the filter's
+     *  length and CRC. */
+    private static final int RECORD_HEADER_SIZE = Codec.SHA_SIZE + 8;
+
+    /** Return the filters of the current repository. */
+    static ChangedPaths get() {
+        if (filters == null) {
+            filters = new ChangedPaths();
+            filters.open();
+        }
+        return filters;
+    }
+
+    /** Forget the filters read, so that the next command reads them
+     *  again. */
+    static void reset() {
+        filters = null;
+    }
+
+    /** Append the filters added to those of the current repository, if
+     *  they were opened, to the filter file. */
+    static void saveIfChanged() {
+        if (filters != null && filters.pending.size() > 0) {
+            filters.write();
+        }
+    }
+
+    /** Record that the commit with SHA changed the files named PATHS. */
+    void add(String sha, Collection<String> paths) {
+        if (bloom.containsKey(sha)) {
+            return;
+        }
+        byte[] filter = paths.size() > MAX_PATHS ? new byte[0]
+            : new byte[(Math.max(MIN_BITS, paths.size() * BITS_PER_PATH)
+                        + Byte.SIZE - 1) / Byte.SIZE];
+        int bits = filter.length * Byte.SIZE;
+        for (String path : paths) {
+            long hash = hash(path);
+            for (int i = 0; i < HASHES; i += 1) {
+                int bit = bit(hash, i, bits);
+                filter[bit / Byte.SIZE] |= 1 << (bit % Byte.SIZE);
+            }
+        }
+        bloom.put(sha, filter);
+        CRC32 crc = new CRC32();
+        crc.update(filter);
+        try {
+            pendingOut.write(Pack.toRaw(sha));
+            pendingOut.writeInt(filter.length);
+            pendingOut.writeInt((int) crc.getValue());
+            pendingOut.write(filter);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return false if the commit with SHA certainly did not change the file
+     *  named PATH, and true if it may have. */
+    boolean mayHaveChanged(String sha, String path) {
+        read();
+        byte[] filter = bloom.get(sha);
+        if (filter == null) {
+            compute(sha);
+            filter = bloom.get(sha);
+        }
+        if (filter.length == 0) {
+            return true;
+        }
+        int bits = filter.length * Byte.SIZE;
+        long hash = hash(path);
+        for (int i = 0; i < HASHES; i += 1) {
+            int bit = bit(hash, i, bits);
+            if ((filter[bit / Byte.SIZE] & (1 << (bit % Byte.SIZE))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Return true iff the commit with record K in GRAPH added, changed or
+     *  removed the file named PATH.  Where the graph holds the root trees
+     *  of the commit and its first parent, only the trees on PATH are
+     *  read; otherwise the commits are. */
+    static boolean changed(CommitGraph graph, int k, String path) {
+        int parent = graph.parent(k);
+        String tree = graph.tree(k);
+        String parentTree = parent < 0 ? "" : graph.tree(parent);
+        String before;
+        String after;
+        if (!tree.equals("") && (parent < 0 || !parentTree.equals(""))) {
+            before = parent < 0 ? null : Tree.blob(parentTree, path);
+            after = Tree.blob(tree, path);
+        } else {
+            before = parent < 0 ? null
+                : Utils.shaToCommit(graph.sha(parent)).getBlobReference(path);
+            after = Utils.shaToCommit(graph.sha(k)).getBlobReference(path);
+        }
+        return before == null ? after != null : !before.equals(after);
+    }
+
+    /** Add the filter of the commit with SHA, comparing it with its first
+     *  parent. */
+    private void compute(String sha) {
+        Commit commit = Utils.shaToCommit(sha);
+        String parent = commit.getParentReference();
+        if (parent.equals("")) {
+            add(sha, commit.blobMap().keySet());
+        } else {
+            add(sha, Tree.diff(Utils.shaToCommit(parent), commit).keySet());
+        }
+    }
+
+    /** Return the 64-bit hash of PATH from which its bits are chosen. */
+    private static long hash(String path) {
+        MessageDigest digest = Utils.newSha1();
+        return ByteBuffer.wrap(digest.digest(
+                path.getBytes(StandardCharsets.UTF_8))).getLong();
+    }
+
+    /** Return the Ith of the bits set by a path with HASH in a filter of
+     *  BITS bits. */
+    private static int bit(long hash, int i, int bits) {
+        int h1 = (int) (hash >>> Integer.SIZE);
+        int h2 = (int) hash;
+        return Integer.remainderUnsigned(h1 + i * h2, bits);
+    }
+
+    /** Find the length of the filter file.  It is 0 if the file is
+     *  missing or of another version, so that it is written afresh. */
+    private void open() {
+        File file = filterFile();
+        if (!file.exists()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new FileInputStream(file))) {
+            if (file.length() < HEADER_SIZE || in.readInt() != MAGIC
+                    || in.readInt() != VERSION) {
+                return;
+            }
+        } catch (IOException excp) {
+            return;
+        }
+        length = file.length();
+    }
+
+    /** Read the filter file, if not done yet, keeping its filters up to
+     *  the first damaged one and cutting the file short there. */
+    private void read() {
+        if (read || length == 0) {
+            read = true;
+            return;
+        }
+        read = true;
+        File file = filterFile();
+        ByteBuffer in = ByteBuffer.wrap(Utils.readContents(file));
+        in.limit((int) Math.min(in.limit(), length));
+        in.position(HEADER_SIZE);
+        int end = in.position();
+        while (in.remaining() >= RECORD_HEADER_SIZE) {
+            String sha = Utils.toHex(in.array(), in.position(),
+                    Codec.SHA_SIZE);
+            in.position(in.position() + Codec.SHA_SIZE);
+            int size = in.getInt();
+            int check = in.getInt();
+            if (size < 0 || size > in.remaining()) {
+                break;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(in.array(), in.position(), size);
+            if ((int) crc.getValue() != check) {
+                break;
+            }
+            byte[] filter = new byte[size];
+            in.get(filter);
+            bloom.putIfAbsent(sha, filter);
+            end = in.position();
+        }
+        if (end < length) {
+            try (FileChannel out = FileChannel.open(file.toPath(),
+                    StandardOpenOption.WRITE)) {
+                out.truncate(end);
+                length = end;
+            } catch (IOException excp) {
+                length = 0;
+            }
+        }
+    }
+
+    /** Append the pending filters to the filter file, writing it afresh
+     *  if it is missing or unusable. */
+    private void write() {
+        try {
+            if (length == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putInt(VERSION);
+                Utils.writeContentsAtomically(filterFile(), header.array());
+                length = HEADER_SIZE;
+            }
+            ByteBuffer records = ByteBuffer.wrap(pending.toByteArray());
+            try (FileChannel out = FileChannel.open(filterFile().toPath(),
+                    StandardOpenOption.WRITE)) {
+                out.position(length);
+                while (records.hasRemaining()) {
+                    out.write(records);
+                }
+                length = out.position();
+            }
+            pending.reset();
+        } catch (IOException | IllegalArgumentException excp) {
+            throw Utils.error("Could not save changed paths: %s",
+                    excp.getMessage());
+        }
+    }
+
+    /** Return the filter file. */
+    private static File filterFile() {
+        return new File(Utils.gitletPath(FILTER_FILE));
+    }
+
+    /** The filters of the current repository, once read. */
+    private static ChangedPaths filters;
+
+    /** Each commit's filter, by SHA: those added, and once the file is
+     *  read, those it holds. */
+    private final HashMap<String, byte[]> bloom = new HashMap<>();
+
+    /** True iff the filter file has been read. */
+    private boolean read;
+
+    /** Length of the filter file, or 0 if it must be written afresh. */
+    private long length;
+
+    /** Filters not yet appended to the file. */
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+
+    /** Writes into pending. */
+    private final DataOutputStream pendingOut = new DataOutputStream(pending);
+
+}
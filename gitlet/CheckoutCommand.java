@@ -2,7 +2,6 @@ package gitlet;
 
 import java.io.File;
 import java.io.Serializable;
-import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.HashSet;
 
@@ -34,75 +33,51 @@ class CheckoutCommand implements Command, Serializable {
         } else if (!args1.equals("") && args2.equals("") && args3.equals("")) {
             executeCase3(tracker, args1);
         } else {
-            System.out.println("Incorrect operands.");
-            System.exit(0);
+            throw Utils.error("Incorrect operands.");
         }
     }
 
     /** Execute Case 1: checkout FILENAME, using TRACKER. */
     private void executeCase1(Tracker tracker, String fileName) {
         String headCommitSha = tracker.getCurrentBranchReference();
-        Commit headCommit = Utils.readObject(
-                new File(Utils.gitletPath(headCommitSha)),
-                Commit.class
-        );
+        Commit headCommit = Utils.shaToCommit(headCommitSha);
         String fileInHeadSha = headCommit.blobMap().get(fileName);
         if (fileInHeadSha == null || fileInHeadSha.equals("")) {
-            System.out.println("File does not exist in that commit.");
-            System.exit(0);
+            throw Utils.error("File does not exist in that commit.");
         }
-        Blob headFileBlob = Utils.shaToBlob(fileInHeadSha);
-        Utils.writeContents(
-                new File(Utils.workingDirPath(fileName)),
-                new String(headFileBlob.getContents(), StandardCharsets.UTF_8)
-        );
+        ObjectStore.checkout(fileInHeadSha,
+                new File(Utils.workingDirPath(fileName)));
+        StatCache.get().written(fileName, fileInHeadSha);
     }
 
     /** Execute Case 2: checkout FILENAME from COMMITSHA using TRACKER. */
     private void executeCase2(
             Tracker tracker, String commitSha, String fileName) {
-        commitSha = Utils.fullSha(commitSha);
-        File commitFile = new File(Utils.gitletPath(commitSha));
-        if (!commitFile.exists()) {
-            System.out.println("No commit with that id exists.");
-            System.exit(0);
-        }
-        Commit commit = Utils.readObject(commitFile, Commit.class);
+        commitSha = IdIndex.get().resolve(commitSha);
+        Commit commit = Utils.shaToCommit(commitSha);
         String fileInCommitSha = commit.blobMap().get(fileName);
         if (fileInCommitSha == null || fileInCommitSha.equals("")) {
-            System.out.println("File does not exist in that commit.");
-            System.exit(0);
+            throw Utils.error("File does not exist in that commit.");
         }
-        Blob fileInCommitBlob = Utils.readObject(
-                new File(Utils.gitletPath(fileInCommitSha)),
-                Blob.class
-        );
-        Utils.writeContents(
-                new File(Utils.workingDirPath(fileName)),
-                new String(fileInCommitBlob.getContents(),
-                        StandardCharsets.UTF_8)
-        );
+        ObjectStore.checkout(fileInCommitSha,
+                new File(Utils.workingDirPath(fileName)));
+        StatCache.get().written(fileName, fileInCommitSha);
     }
 
     /** Execute Case 3, checkout BRANCHNAME, using TRACKER. */
     private void executeCase3(Tracker tracker, String branchName) {
 
         if (!tracker.getBranches().containsKey(branchName)) {
-            System.out.println("No such branch exists.");
-            System.exit(0);
+            throw Utils.error("No such branch exists.");
         }
         if (branchName.equals(tracker.getCurrentBranchName())) {
-            System.out.println("No need to checkout the current branch.");
-            System.exit(0);
+            throw Utils.error("No need to checkout the current branch.");
         }
 
         String checkedOutBranchHeadCommitSha =
                 tracker.getBranches().get(branchName);
         Commit checkedOutBranchHeadCommit =
-                Utils.readObject(
-                    new File(Utils.gitletPath(checkedOutBranchHeadCommitSha)),
-                    Commit.class
-                );
+                Utils.shaToCommit(checkedOutBranchHeadCommitSha);
         HashMap<String, String> checkedOutBlobs =
                 checkedOutBranchHeadCommit.blobMap();
 
@@ -110,34 +85,15 @@ class CheckoutCommand implements Command, Serializable {
         for (String fileName : workingDirListing) {
             if (!fileName.startsWith(".") && tracker.isUntracked(fileName)) {
                 if (checkedOutBlobs.containsKey(fileName)) {
-                    System.out.println(
-                            "There is an untracked file in the way; "
+                    throw Utils.error("There is an untracked file in the way; "
                             + "delete it or add it first.");
-                    System.exit(0);
                 }
             }
         }
 
-        for (String fileName : checkedOutBlobs.keySet()) {
-            Blob blob = Utils.readObject(
-                    new File(Utils.gitletPath(checkedOutBlobs.get(fileName))),
-                    Blob.class
-            );
-            Utils.writeContents(
-                    new File(Utils.workingDirPath(fileName)),
-                    new String(blob.getContents(), StandardCharsets.UTF_8)
-            );
-        }
-
         String headCommitSha = tracker.getCurrentBranchReference();
-        Commit headCommit = Utils.readObject(
-                new File(Utils.gitletPath(headCommitSha)), Commit.class);
-        HashMap<String, String> trackedBlobs = headCommit.blobMap();
-        for (String fileName : trackedBlobs.keySet()) {
-            if (!checkedOutBlobs.containsKey(fileName)) {
-                (new File(Utils.workingDirPath(fileName))).delete();
-            }
-        }
+        Commit headCommit = Utils.shaToCommit(headCommitSha);
+        Materializer.update(headCommit.blobMap(), checkedOutBlobs);
 
         tracker.clearStage();
         tracker.changeCurrentBranchName(branchName);
@@ -0,0 +1,43 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** ChunkList: the contents of a large file, as the blobs holding its
+ *  chunks, in order.  A file's chunk list stands in for its blob.
+ *  @author Ryan Brill*/
+
+class ChunkList {
+
+    /** Add the chunk whose blob has SHA and which holds LENGTH bytes. */
+    void add(String sha, int length) {
+        shas.add(sha);
+        lengths.add(length);
+        size += length;
+    }
+
+    /** Return the SHAs of the chunks' blobs, in order. */
+    List<String> getShas() {
+        return shas;
+    }
+
+    /** Return the lengths of the chunks, in order. */
+    List<Integer> getLengths() {
+        return lengths;
+    }
+
+    /** Return the length of the whole file. */
+    long size() {
+        return size;
+    }
+
+    /** SHAs of the chunks' blobs. */
+    private final ArrayList<String> shas = new ArrayList<>();
+
+    /** Lengths of the chunks. */
+    private final ArrayList<Integer> lengths = new ArrayList<>();
+
+    /** Total length of the chunks. */
+    private long size;
+
+}
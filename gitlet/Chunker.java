@@ -0,0 +1,105 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.Random;
+
+/** Splits large files into content-defined chunks, cut where a Gear
+ *  rolling hash's top bits are zero, so an edit moves only the boundaries
+ *  near it.  The constants below are part of every chunked file's SHA and
+ *  must never change.
+ *  @author Ryan Brill
+ */
+class Chunker {
+
+    /** Files longer than this are chunked. */
+    static final long THRESHOLD = 1 << 20;
+
+    /** Shortest chunk, except for the last one of a file. */
+    static final int MIN_CHUNK = 16 * 1024;
+
+    /** Typical length of a chunk beyond MIN_CHUNK. */
+    static final int AVERAGE_CHUNK = 64 * 1024;
+
+    /** Longest chunk. */
+    static final int MAX_CHUNK = 256 * 1024;
+
+    /** Bits of the hash that must be zero at a boundary: the top
+     *  log2(AVERAGE_CHUNK) of them, which depend on the last 64 bytes. */
+    private static final long MASK =
+        -1L << (Long.SIZE - Integer.numberOfTrailingZeros(AVERAGE_CHUNK));
+
+    /** Seed of the hash's table. */
+    private static final long SEED = 0x6769746c6574L;
+
+    /** The random value the hash mixes in for each byte value. */
+    private static final long[] GEAR = new long[256];
+
+    static {
+        Random random = new Random(SEED);
+        for (int i = 0; i < GEAR.length; i += 1) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    /** Return true iff a file of SIZE bytes is stored in chunks. */
+    static boolean isLarge(long size) {
+        return size > THRESHOLD;
+    }
+
+    /** Split the contents of IN into chunks and return their list.  Each
+     *  chunk not already in the store is stored as a blob iff STORE.  IN is
+     *  read through a buffer of fixed size, so the memory used does not
+     *  depend on its length. */
+    static ChunkList split(InputStream in, boolean store) throws IOException {
+        ChunkList chunks = new ChunkList();
+        MessageDigest digest = Utils.fileSha1();
+        byte[] header = Codec.blobHeader();
+        byte[] chunk = new byte[MAX_CHUNK];
+        byte[] buf = new byte[ObjectStore.INGEST_BUFFER_SIZE];
+        int length = 0;
+        long hash = 0;
+        for (int n = in.read(buf); n >= 0; n = in.read(buf)) {
+            for (int i = 0; i < n; i += 1) {
+                chunk[length] = buf[i];
+                length += 1;
+                hash = (hash << 1) + GEAR[buf[i] & 0xff];
+                if (length == MAX_CHUNK
+                        || (length >= MIN_CHUNK && (hash & MASK) == 0)) {
+                    emit(chunks, digest, header, chunk, length, store);
+                    length = 0;
+                    hash = 0;
+                }
+            }
+        }
+        if (length > 0 || chunks.getShas().isEmpty()) {
+            emit(chunks, digest, header, chunk, length, store);
+        }
+        return chunks;
+    }
+
+    /** Add the chunk held by the first LENGTH bytes of CHUNK to CHUNKS,
+     *  using DIGEST to compute the SHA of its blob, whose encoding starts
+     *  with HEADER.  Store the blob iff STORE and it is not stored yet. */
+    private static void emit(ChunkList chunks, MessageDigest digest,
+                             byte[] header, byte[] chunk, int length,
+                             boolean store) throws IOException {
+        digest.update(header);
+        digest.update(chunk, 0, length);
+        String sha = Utils.toHex(digest.digest());
+        if (store && !ObjectStore.contains(sha)) {
+            ObjectStore.ObjectWriter out = ObjectStore.newWriter();
+            try {
+                out.write(header);
+                out.write(chunk, 0, length);
+                out.close();
+            } catch (IOException excp) {
+                out.abort();
+                throw excp;
+            }
+        }
+        chunks.add(sha, length);
+    }
+
+}
@@ -0,0 +1,471 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/** The binary encodings of commits, blobs, chunk lists, trees and the
+ *  tracker, each starting with a type byte and a version byte.  Maps are
+ *  written in key order, so equal objects always hash the same way.
+ *  @author Ryan Brill
+ */
+class Codec {
+
+    /** Type byte of an encoded commit. */
+    static final byte COMMIT = 'c';
+
+    /** Type byte of an encoded blob. */
+    static final byte BLOB = 'b';
+
+    /** Type byte of an encoded chunk list, which stands in for the blob
+     *  of a large file. */
+    static final byte CHUNKS = 'k';
+
+    /** Type byte of an encoded tree. */
+    static final byte TREE = 'd';
+
+    /** Type byte of an encoded tree delta, a tree stored as the changes
+     *  from another. */
+    static final byte TREE_DELTA = 'e';
+
+    /** Type byte of an encoded tracker. */
+    static final byte TRACKER = 't';
+
+    /** The format version written. */
+    static final byte VERSION = 1;
+
+    /** Length of the type and version header. */
+    static final int HEADER_SIZE = 2;
+
+    /** Number of bytes in a raw SHA-1. */
+    static final int SHA_SIZE = 20;
+
+    /** Tag of the commit extension holding a merge commit's second
+     *  parent. */
+    private static final int SECOND_PARENT_TAG = 1;
+
+    /** Tag of the commit extension holding the SHA of a commit's root
+     *  tree.  A commit with one lists no files itself. */
+    private static final int TREE_TAG = 2;
+
+    /* COMMITS. */
+
+    /** Return the encoding of COMMIT. */
+    static byte[] encode(Commit commit) {
+        Encoder out = new Encoder(COMMIT);
+        out.sha(commit.getParentReference());
+        LocalDateTime time = commit.getTimeStamp();
+        out.varlong(time.toEpochSecond(ZoneOffset.UTC));
+        out.varint(time.getNano());
+        out.string(commit.getLogMessage());
+        String secondParent = commit.getSecondParentReference();
+        String tree = commit.getTreeReference();
+        if (tree.equals("")) {
+            out.map(commit.blobMap());
+        } else {
+            out.varint(0);
+        }
+        int extensions = (secondParent.equals("") ? 0 : 1)
+            + (tree.equals("") ? 0 : 1);
+        out.varint(extensions);
+        if (!secondParent.equals("")) {
+            out.varint(SECOND_PARENT_TAG);
+            out.varint(1 + SHA_SIZE);
+            out.sha(secondParent);
+        }
+        if (!tree.equals("")) {
+            out.varint(TREE_TAG);
+            out.varint(1 + SHA_SIZE);
+            out.sha(tree);
+        }
+        return out.toByteArray();
+    }
+
+    /** Return the commit encoded in BYTES. */
+    static Commit decodeCommit(byte[] bytes) {
+        ByteBuffer in = open(bytes, COMMIT);
+        try {
+            String parent = sha(in);
+            long seconds = varlong(in);
+            int nanos = varint(in);
+            String message = string(in);
+            Commit commit = new Commit(message,
+                    LocalDateTime.ofEpochSecond(seconds, nanos,
+                            ZoneOffset.UTC), parent);
+            commit.setBlobMap(map(in));
+            int extensions = varint(in);
+            for (int i = 0; i < extensions; i += 1) {
+                int tag = varint(in);
+                int end = varint(in) + in.position();
+                switch (tag) {
+                case SECOND_PARENT_TAG:
+                    commit.setSecondParentReference(sha(in));
+                    break;
+                case TREE_TAG:
+                    commit.setTreeReference(sha(in), null);
+                    break;
+                default:
+                    throw Utils.error("Commit uses unknown extensions.");
+                }
+                if (in.position() != end) {
+                    throw Utils.error("Corrupt commit.");
+                }
+            }
+            return commit;
+        } catch (BufferUnderflowException excp) {
+            throw Utils.error("Corrupt commit.");
+        }
+    }
+
+    /* BLOBS. */
+
+    /** Return the header that starts the encoding of every blob; the
+     *  blob's contents follow it directly. */
+    static byte[] blobHeader() {
+        return new byte[] { BLOB, VERSION };
+    }
+
+    /** Return the encoding of BLOB. */
+    static byte[] encode(Blob blob) {
+        byte[] contents = blob.getContents();
+        byte[] bytes = new byte[HEADER_SIZE + contents.length];
+        bytes[0] = BLOB;
+        bytes[1] = VERSION;
+        System.arraycopy(contents, 0, bytes, HEADER_SIZE, contents.length);
+        return bytes;
+    }
+
+    /** Read the header of a blob or chunk list from IN and return its
+     *  type byte, BLOB or CHUNKS.  IN is left at the blob's contents or the
+     *  rest of the chunk list. */
+    static byte readBlobHeader(InputStream in) throws IOException {
+        int type = in.read();
+        int version = in.read();
+        if (type != BLOB && type != CHUNKS) {
+            throw Utils.error("Object is not a blob.");
+        }
+        checkVersion(version);
+        return (byte) type;
+    }
+
+    /* CHUNK LISTS. */
+
+    /** Return the encoding of CHUNKS: the file's length, then the SHA and
+     *  length of each chunk. */
+    static byte[] encode(ChunkList chunks) {
+        Encoder out = new Encoder(CHUNKS);
+        out.varlong(chunks.size());
+        out.varint(chunks.getShas().size());
+        for (int i = 0; i < chunks.getShas().size(); i += 1) {
+            out.sha(chunks.getShas().get(i));
+            out.varint(chunks.getLengths().get(i));
+        }
+        return out.toByteArray();
+    }
+
+    /** Return the chunk list whose encoding, after the header already read
+     *  by readBlobHeader, is the rest of IN. */
+    static ChunkList decodeChunkList(InputStream in) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(in.readAllBytes());
+        try {
+            long size = varlong(buf);
+            int n = varint(buf);
+            ChunkList chunks = new ChunkList();
+            for (int i = 0; i < n; i += 1) {
+                String sha = sha(buf);
+                chunks.add(sha, varint(buf));
+            }
+            if (chunks.size() != size) {
+                throw Utils.error("Corrupt chunk list.");
+            }
+            return chunks;
+        } catch (BufferUnderflowException excp) {
+            throw Utils.error("Corrupt chunk list.");
+        }
+    }
+
+    /* TREES. */
+
+    /** Return the encoding of TREE: its files, then its subtrees.  A tree
+     *  delta starts with the SHA of its base and its depth, and an entry
+     *  whose SHA is absent is one removed from the base. */
+    static byte[] encode(Tree tree) {
+        Encoder out;
+        if (tree.base().equals("")) {
+            out = new Encoder(TREE);
+        } else {
+            out = new Encoder(TREE_DELTA);
+            out.sha(tree.base());
+            out.varint(tree.depth());
+        }
+        out.map(tree.files());
+        out.map(tree.subtrees());
+        return out.toByteArray();
+    }
+
+    /** Return the tree or tree delta encoded in BYTES. */
+    static Tree decodeTree(byte[] bytes) {
+        boolean delta = bytes.length > 0 && bytes[0] == TREE_DELTA;
+        ByteBuffer in = open(bytes, delta ? TREE_DELTA : TREE);
+        try {
+            Tree tree = delta ? new Tree(sha(in), varint(in)) : new Tree();
+            tree.files().putAll(map(in));
+            tree.subtrees().putAll(map(in));
+            return tree;
+        } catch (BufferUnderflowException excp) {
+            throw Utils.error("Corrupt tree.");
+        }
+    }
+
+    /* THE TRACKER. */
+
+    /** Return the encoding of TRACKER.  It ends with the number of the
+     *  tracker's checkpoint (see Journal), which trackers saved before the
+     *  journal was introduced lack. */
+    static byte[] encode(Tracker tracker) {
+        Encoder out = new Encoder(TRACKER);
+        out.string(tracker.getCurrentBranchName());
+        out.map(tracker.getBranches());
+        out.map(tracker.getStagingArea());
+        out.varint(tracker.getRemoveThese().size());
+        for (String fileName : tracker.getRemoveThese()) {
+            out.string(fileName);
+        }
+        out.varint(tracker.getListedCommits().size());
+        for (String commitSha : tracker.getListedCommits()) {
+            out.sha(commitSha);
+        }
+        Map<String, String> remotes = tracker.getRemotes();
+        out.varint(remotes.size());
+        for (String name : sorted(remotes)) {
+            out.string(name);
+            out.string(remotes.get(name));
+        }
+        out.varlong(tracker.getCheckpoint());
+        return out.toByteArray();
+    }
+
+    /** Return the tracker encoded in BYTES. */
+    static Tracker decodeTracker(byte[] bytes) {
+        ByteBuffer in = open(bytes, TRACKER);
+        try {
+            String currentBranchName = string(in);
+            HashMap<String, String> branches = map(in);
+            HashMap<String, String> stagingArea = map(in);
+            int n = varint(in);
+            ArrayList<String> removeThese = new ArrayList<>(n);
+            for (int i = 0; i < n; i += 1) {
+                removeThese.add(string(in));
+            }
+            n = varint(in);
+            ArrayList<String> listedCommits = new ArrayList<>(n);
+            for (int i = 0; i < n; i += 1) {
+                listedCommits.add(sha(in));
+            }
+            n = varint(in);
+            HashMap<String, String> remotes = new HashMap<>();
+            for (int i = 0; i < n; i += 1) {
+                remotes.put(string(in), string(in));
+            }
+            Tracker tracker = new Tracker(currentBranchName, branches,
+                    stagingArea, removeThese, listedCommits, remotes);
+            if (in.hasRemaining()) {
+                tracker.setCheckpoint(varlong(in));
+            }
+            return tracker;
+        } catch (BufferUnderflowException excp) {
+            throw Utils.error("Corrupt tracker.");
+        }
+    }
+
+    /* ENCODING. */
+
+    /** Builds an encoding in memory. */
+    private static class Encoder {
+
+        /** An encoder for an object of type TYPE. */
+        Encoder(byte type) {
+            bytes = new ByteArrayOutputStream(256);
+            out = new DataOutputStream(bytes);
+            write(type);
+            write(VERSION);
+        }
+
+        /** Write the byte B. */
+        void write(int b) {
+            try {
+                out.write(b);
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+
+        /** Write the first LEN bytes of B. */
+        void write(byte[] b, int len) {
+            try {
+                out.write(b, 0, len);
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+
+        /** Write the non-negative N as a varint. */
+        void varlong(long n) {
+            while ((n & ~0x7fL) != 0) {
+                write((int) ((n & 0x7f) | 0x80));
+                n >>>= 7;
+            }
+            write((int) n);
+        }
+
+        /** Write the non-negative N as a varint. */
+        void varint(int n) {
+            varlong(n & 0xffffffffL);
+        }
+
+        /** Write the string S. */
+        void string(String s) {
+            byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+            varint(utf8.length);
+            write(utf8, utf8.length);
+        }
+
+        /** Write the SHA-1 SHA, which may be null or empty. */
+        void sha(String sha) {
+            if (sha == null || sha.isEmpty()) {
+                write(0);
+                return;
+            }
+            write(SHA_SIZE);
+            for (int i = 0; i < Utils.UID_LENGTH; i += 2) {
+                write((Character.digit(sha.charAt(i), 16) << 4)
+                        | Character.digit(sha.charAt(i + 1), 16));
+            }
+        }
+
+        /** Write MAP, whose values are SHAs, in ascending key order. */
+        void map(Map<String, String> map) {
+            varint(map.size());
+            for (String key : sorted(map)) {
+                string(key);
+                sha(map.get(key));
+            }
+        }
+
+        /** Return the encoding built. */
+        byte[] toByteArray() {
+            return bytes.toByteArray();
+        }
+
+        /** The bytes written. */
+        private final ByteArrayOutputStream bytes;
+
+        /** Writes into bytes. */
+        private final DataOutputStream out;
+    }
+
+    /** Return the keys of MAP in ascending order. */
+    private static String[] sorted(Map<String, String> map) {
+        String[] keys = map.keySet().toArray(new String[0]);
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    /* DECODING. */
+
+    /** Return a buffer over BYTES positioned after its header, which must
+     *  announce an object of type TYPE. */
+    private static ByteBuffer open(byte[] bytes, byte type) {
+        if (bytes.length < HEADER_SIZE || bytes[0] != type) {
+            throw Utils.error("Object is not a %s.", typeName(type));
+        }
+        checkVersion(bytes[1]);
+        return ByteBuffer.wrap(bytes, HEADER_SIZE,
+                bytes.length - HEADER_SIZE);
+    }
+
+    /** Throw a GitletException unless VERSION is one we can read. */
+    private static void checkVersion(int version) {
+        if (version != VERSION) {
+            throw Utils.error("Unsupported object format version %d.",
+                    version);
+        }
+    }
+
+    /** Return the name of the object type TYPE. */
+    private static String typeName(byte type) {
+        switch (type) {
+        case COMMIT: return "commit";
+        case BLOB: return "blob";
+        case CHUNKS: return "chunk list";
+        case TREE: case TREE_DELTA: return "tree";
+        default: return "tracker";
+        }
+    }
+
+    /** Read a varint from IN. */
+    private static long varlong(ByteBuffer in) {
+        long n = 0;
+        for (int shift = 0;; shift += 7) {
+            int b = in.get() & 0xff;
+            n |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return n;
+            }
+        }
+    }
+
+    /** Read a varint that fits in an int from IN. */
+    private static int varint(ByteBuffer in) {
+        return (int) varlong(in);
+    }
+
+    /** Read a string from IN, decoding it in place. */
+    private static String string(ByteBuffer in) {
+        int length = varint(in);
+        if (length > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String s = new String(in.array(), in.arrayOffset() + in.position(),
+                length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return s;
+    }
+
+    /** Read a SHA from IN, returning "" if it is absent. */
+    private static String sha(ByteBuffer in) {
+        int length = in.get();
+        if (length == 0) {
+            return "";
+        }
+        if (length != SHA_SIZE || in.remaining() < SHA_SIZE) {
+            throw new BufferUnderflowException();
+        }
+        String sha = Utils.toHex(in.array(),
+                in.arrayOffset() + in.position(), SHA_SIZE);
+        in.position(in.position() + SHA_SIZE);
+        return sha;
+    }
+
+    /** Read a map whose values are SHAs from IN. */
+    private static HashMap<String, String> map(ByteBuffer in) {
+        int n = varint(in);
+        HashMap<String, String> map = new HashMap<>(Math.max(16, 2 * n));
+        for (int i = 0; i < n; i += 1) {
+            String key = string(in);
+            map.put(key, sha(in));
+        }
+        return map;
+    }
+
+}
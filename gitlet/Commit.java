@@ -1,6 +1,5 @@
 package gitlet;
 
-import java.io.Serializable;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
@@ -8,7 +7,7 @@ import java.util.HashMap;
 /** The commit object.
  *  @author Ryan Brill
  */
-public class Commit implements Serializable  {
+public class Commit {
 
     /** This commit has logMessage L, timeStamp T,
      *  and parentReference P.*/
@@ -21,11 +20,18 @@ public class Commit implements Serializable  {
     /* BLOBS TRACKED BY THIS COMMIT. */
 
     /** HashMap of Blobs tracked by this Commit:
-     *  Key: File name // Value: Blob reference (SHA value). */
+     *  Key: File name // Value: Blob reference (SHA value).
+     *  Null if this commit was read with a root tree, whose files are
+     *  then read through the ObjectCache instead, so that a commit shared
+     *  by the cache is never changed. */
     private HashMap<String, String> blobMap = new HashMap<>();
 
-    /** Return blobMap. */
+    /** Return blobMap, or the files of the root tree if it is null.  The
+     *  map returned must not be changed. */
     HashMap<String, String> blobMap() {
+        if (blobMap == null) {
+            return ObjectCache.files(treeReference);
+        }
         return blobMap;
     }
 
@@ -34,24 +40,42 @@ public class Commit implements Serializable  {
         blobMap = B;
     }
 
-    /** Add a (FILENAME, REFERENCE) entry to the blobMap. */
+    /** Reference to the root tree of this commit, which lists its files
+     *  in place of the commit itself, or "" if it has none. */
+    private String treeReference = "";
+
+    /** Return the reference to the root tree of this commit, or "". */
+    String getTreeReference() {
+        return treeReference;
+    }
+
+    /** Set the root tree of this commit to T, whose files are B, or are
+     *  to be read from T when needed if B is null. */
+    void setTreeReference(String t, HashMap<String, String> B) {
+        treeReference = t;
+        blobMap = B;
+    }
+
+    /** Add a (FILENAME, REFERENCE) entry to the blobMap of this commit,
+     *  which must be one being built. */
     void addToBlobMap(String fileName, String reference) {
         blobMap.put(fileName, reference);
     }
 
-    /** Untrack FILENAME by removing it from the blobMap. */
+    /** Untrack FILENAME by removing it from the blobMap of this commit,
+     *  which must be one being built. */
     void removeFromBlobMap(String fileName) {
         blobMap.remove(fileName);
     }
 
     /** Return the Sha reference of the blob named BLOBNAME. */
     String getBlobReference(String blobName) {
-        return blobMap.get(blobName);
+        return blobMap().get(blobName);
     }
 
     /** Return true if this commit is tracking the blob named FILENAME. */
     boolean isTracking(String fileName) {
-        return blobMap.containsKey(fileName);
+        return blobMap().containsKey(fileName);
     }
 
     /* PARENT COMMIT. */
@@ -64,9 +88,29 @@ public class Commit implements Serializable  {
         return parentReference;
     }
 
+    /** Reference to the second parent of this commit, the head of the
+     *  branch merged in, or "" if this is not a merge commit. */
+    private String secondParentReference = "";
+
+    /** Return the reference to the second parent of this commit, or "" if
+     *  it has none. */
+    String getSecondParentReference() {
+        return secondParentReference;
+    }
+
+    /** Set the reference to the second parent of this commit to P. */
+    void setSecondParentReference(String p) {
+        secondParentReference = p;
+    }
+
     /** The timestamp of this commit. */
     private LocalDateTime timeStamp;
 
+    /** Return the timestamp of this commit. */
+    LocalDateTime getTimeStamp() {
+        return timeStamp;
+    }
+
     /** The log message of this commit. */
     private String logMessage;
 
@@ -80,7 +124,11 @@ public class Commit implements Serializable  {
     public String toString() {
         StringBuilder S = new StringBuilder();
         S.append("===\n");
-        S.append("commit " + Utils.sha1(Utils.serialize(this)) + "\n");
+        S.append("commit " + Utils.sha1(Codec.encode(this)) + "\n");
+        if (!secondParentReference.equals("")) {
+            S.append("Merge: " + parentReference.substring(0, 7) + " "
+                    + secondParentReference.substring(0, 7) + "\n");
+        }
         DateTimeFormatter F =
                 DateTimeFormatter.ofPattern("EEE MMM d HH:mm:ss yyyy");
         S.append("Date: " + timeStamp.format(F) + " -0800" + "\n");
@@ -1,6 +1,5 @@
 package gitlet;
 
-import java.io.File;
 import java.io.Serializable;
 import java.time.Instant;
 import java.time.LocalDateTime;
@@ -15,7 +14,14 @@ class CommitCommand implements Command, Serializable {
 
     /** The commit created by this command will have logMessage L. */
     CommitCommand(String L) {
+        this(L, "");
+    }
+
+    /** The commit created by this command will have logMessage L and, if
+     *  it merges a branch in, second parent P. */
+    CommitCommand(String L, String P) {
         logMessage = L;
+        secondParentReference = P;
     }
 
     /** Return true iff N is the proper number of operands for this command. */
@@ -30,19 +36,14 @@ class CommitCommand implements Command, Serializable {
         ArrayList<String> toBeRemoved = tracker.toBeRemoved();
 
         if (stage.isEmpty() && toBeRemoved.isEmpty()) {
-            System.out.println("No changes added to the commit.");
-            System.exit(0);
+            throw Utils.error("No changes added to the commit.");
         }
         if (logMessage.equals("")) {
-            System.out.println("Please enter a commit message.");
-            System.exit(0);
+            throw Utils.error("Please enter a commit message.");
         }
 
         String previousCommitReference = tracker.getCurrentBranchReference();
-        Commit previousCommit = Utils.readObject(
-                new File(Utils.gitletPath(previousCommitReference)),
-                Commit.class
-        );
+        Commit previousCommit = Utils.shaToCommit(previousCommitReference);
         HashMap<String, String> previousBlobMap = previousCommit.blobMap();
 
         Commit currentCommit = new Commit(logMessage,
@@ -50,7 +51,15 @@ class CommitCommand implements Command, Serializable {
                         Instant.now(), ZoneId.of("America/Los_Angeles")),
                 previousCommitReference);
 
-        currentCommit.setBlobMap(previousBlobMap);
+        currentCommit.setSecondParentReference(secondParentReference);
+        currentCommit.setBlobMap(new HashMap<>(previousBlobMap));
+
+        ArrayList<String> changedPaths = new ArrayList<>(stage.keySet());
+        changedPaths.addAll(toBeRemoved);
+        HashMap<String, String> changes = new HashMap<>(stage);
+        for (String fileName : toBeRemoved) {
+            changes.put(fileName, null);
+        }
 
         for (String fileName : stage.keySet()) {
             currentCommit.addToBlobMap(fileName, stage.get(fileName));
@@ -62,14 +71,26 @@ class CommitCommand implements Command, Serializable {
         }
         tracker.clearRemoveThese();
 
-        String currentCommitSha = Utils.sha1(Utils.serialize(currentCommit));
+        String previousTree = previousCommit.getTreeReference();
+        String tree = previousTree.equals("")
+            ? Tree.write(currentCommit.blobMap())
+            : Tree.update(previousTree, changes);
+        currentCommit.setTreeReference(tree, currentCommit.blobMap());
+
+        String currentCommitSha = Utils.sha1(Codec.encode(currentCommit));
         tracker.setCurrentBranchReference(currentCommitSha);
-        tracker.addCommit(currentCommitSha);
 
         Utils.writeObject(currentCommit);
+        CommitGraph.append(currentCommitSha, currentCommit);
+        ChangedPaths.get().add(currentCommitSha, changedPaths);
+        MessageIndex.get().add(currentCommitSha, logMessage);
+        CommitRegistry.get().add(currentCommitSha);
     }
 
 
     /** The Log Message associated with this commit. */
     private String logMessage;
+
+    /** The second parent of the commit created, or "". */
+    private String secondParentReference;
 }
@@ -0,0 +1,447 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/** The commit graph: one record per commit in .gitlet/commit-graph,
+ *  holding its parents, timestamp, generation number and root tree, so
+ *  that walking the history reads no commits.  Records are appended as
+ *  commits are made, and an inconsistent record ends the graph.
+ *  @author Ryan Brill
+ */
+class CommitGraph {
+
+    /** Name of the commit graph file within .gitlet. */
+    static final String GRAPH_FILE = "commit-graph";
+
+    /** Length of a record. */
+    static final int RECORD_SIZE = 64;
+
+    /** First four bytes of a commit graph file: "GCGR". */
+    private static final int MAGIC = 0x47434752;
+
+    /** The format version written. */
+    private static final int VERSION = 1;
+
+    /** Length of the file's header: its magic and version. */
+    private static final int HEADER_SIZE = 8;
+
+    /** Offsets of the fields within a record. */
+    private static final int PARENT = Codec.SHA_SIZE, SECOND_PARENT = 24,
+        SECONDS = 28, NANOS = 36, GENERATION = 40, TREE = 44;
+
+    /** Number of records for which room is first made. */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** Number of records read at once when searching the file back from
+     *  its end. */
+    private static final int SCAN_RECORDS = 256;
+
+    /** Return the graph of the current repository, reading it the first
+     *  time. */
+    static CommitGraph get() {
+        if (graph == null) {
+            graph = new CommitGraph();
+            graph.read();
+            for (Map.Entry<String, Commit> made : unread.entrySet()) {
+                graph.add(made.getKey(), made.getValue());
+            }
+            unread.clear();
+        }
+        return graph;
+    }
+
+    /** Forget the graph read, so that the next command reads it again. */
+    static void reset() {
+        graph = null;
+        unread.clear();
+    }
+
+    /** Record that COMMIT, whose SHA is SHA, was just made: add its record
+     *  to the graph of the current repository if it was read, and
+     *  otherwise append it to the graph file when the command ends. */
+    static void append(String sha, Commit commit) {
+        if (graph != null) {
+            graph.add(sha, commit);
+        } else {
+            unread.put(sha, commit);
+        }
+    }
+
+    /** Append the records added to the graph of the current repository,
+     *  if it was read, or those of the commits made since, if not, to its
+     *  file. */
+    static void saveIfChanged() {
+        if (graph != null && graph.saved < graph.size) {
+            graph.write();
+        } else if (graph == null && !unread.isEmpty()) {
+            if (!appendUnread()) {
+                get();
+                graph.write();
+            }
+            unread.clear();
+        }
+    }
+
+    /** Return the number of commits in the graph. */
+    int size() {
+        return size;
+    }
+
+    /** Return the index of the record of the commit with SHA, or -1 if it
+     *  has none. */
+    int find(String sha) {
+        Integer k = index.get(sha);
+        return k == null ? -1 : k;
+    }
+
+    /** Return the index of the record of the commit with SHA, adding
+     *  records for it and any of its ancestors that lack them. */
+    int lookup(String sha) {
+        int k = find(sha);
+        if (k >= 0) {
+            return k;
+        }
+        HashMap<String, Commit> read = new HashMap<>();
+        ArrayDeque<String> pending = new ArrayDeque<>();
+        pending.push(sha);
+        while (!pending.isEmpty()) {
+            String next = pending.peek();
+            Commit commit = read.get(next);
+            if (commit == null) {
+                commit = Utils.shaToCommit(next);
+                read.put(next, commit);
+            }
+            String parent = commit.getParentReference();
+            String second = commit.getSecondParentReference();
+            if (!parent.equals("") && find(parent) < 0) {
+                pending.push(parent);
+            } else if (!second.equals("") && find(second) < 0) {
+                pending.push(second);
+            } else {
+                add(next, commit);
+                pending.pop();
+            }
+        }
+        return find(sha);
+    }
+
+    /** Add a record for COMMIT, whose SHA is SHA, unless it has one, and
+     *  return its index. */
+    int add(String sha, Commit commit) {
+        int k = find(sha);
+        if (k >= 0) {
+            return k;
+        }
+        String parentSha = commit.getParentReference();
+        String secondSha = commit.getSecondParentReference();
+        int parent = parentSha.equals("") ? -1 : lookup(parentSha);
+        int second = secondSha.equals("") ? -1 : lookup(secondSha);
+        int generation = 1;
+        if (parent >= 0) {
+            generation = generation(parent) + 1;
+        }
+        if (second >= 0) {
+            generation = Math.max(generation, generation(second) + 1);
+        }
+        return put(sha, parent, second, commit.getTimeStamp(), generation,
+                commit.getTreeReference());
+    }
+
+    /** Add a record for the commit with SHA, whose parents have records
+     *  PARENT and SECOND (-1 where there is none), made at TIME, of
+     *  GENERATION, whose root tree is TREE or "", and return its index. */
+    private int put(String sha, int parent, int second, LocalDateTime time,
+                    int generation, String tree) {
+        ensureCapacity(size + 1);
+        int k = size;
+        records.position(k * RECORD_SIZE);
+        records.put(Pack.toRaw(sha));
+        records.putInt(parent).putInt(second);
+        records.putLong(time.toEpochSecond(ZoneOffset.UTC));
+        records.putInt(time.getNano());
+        records.putInt(generation);
+        records.put(tree.equals("") ? new byte[Codec.SHA_SIZE]
+                    : Pack.toRaw(tree));
+        index.put(sha, k);
+        size += 1;
+        return k;
+    }
+
+    /** Return the SHA of the commit with record K. */
+    String sha(int k) {
+        return Utils.toHex(records.array(), k * RECORD_SIZE,
+                Codec.SHA_SIZE);
+    }
+
+    /** Return the index of the record of the first parent of the commit
+     *  with record K, or -1 if it has none. */
+    int parent(int k) {
+        return records.getInt(k * RECORD_SIZE + PARENT);
+    }
+
+    /** Return the index of the record of the second parent of the commit
+     *  with record K, or -1 if it has none. */
+    int secondParent(int k) {
+        return records.getInt(k * RECORD_SIZE + SECOND_PARENT);
+    }
+
+    /** Return the timestamp of the commit with record K. */
+    LocalDateTime timeStamp(int k) {
+        return LocalDateTime.ofEpochSecond(
+                records.getLong(k * RECORD_SIZE + SECONDS),
+                records.getInt(k * RECORD_SIZE + NANOS), ZoneOffset.UTC);
+    }
+
+    /** Return the generation number of the commit with record K. */
+    int generation(int k) {
+        return records.getInt(k * RECORD_SIZE + GENERATION);
+    }
+
+    /** Return the SHA of the root tree of the commit with record K, or ""
+     *  if it has none. */
+    String tree(int k) {
+        int offset = k * RECORD_SIZE + TREE;
+        for (int i = 0; i < Codec.SHA_SIZE; i += 1) {
+            if (records.get(offset + i) != 0) {
+                return Utils.toHex(records.array(), offset, Codec.SHA_SIZE);
+            }
+        }
+        return "";
+    }
+
+    /** Make room for at least N records. */
+    private void ensureCapacity(int n) {
+        if (records.capacity() >= n * RECORD_SIZE) {
+            return;
+        }
+        int capacity = Math.max(records.capacity() * 2, n * RECORD_SIZE);
+        ByteBuffer bigger = ByteBuffer.allocate(capacity);
+        bigger.put(records.array(), 0, size * RECORD_SIZE);
+        records = bigger;
+    }
+
+    /** Read the graph file, keeping its records up to the first one that
+     *  is damaged.  The graph is empty if the file is missing or of
+     *  another version. */
+    private void read() {
+        File file = graphFile();
+        if (!file.exists()) {
+            return;
+        }
+        ByteBuffer in = ByteBuffer.wrap(Utils.readContents(file));
+        if (in.remaining() < HEADER_SIZE || in.getInt() != MAGIC
+                || in.getInt() != VERSION) {
+            return;
+        }
+        int n = in.remaining() / RECORD_SIZE;
+        records = ByteBuffer.allocate(
+                Math.max(n, INITIAL_CAPACITY) * RECORD_SIZE);
+        records.put(in.array(), HEADER_SIZE, n * RECORD_SIZE);
+        for (int k = 0; k < n; k += 1) {
+            if (!consistent(k)) {
+                break;
+            }
+            index.putIfAbsent(sha(k), k);
+            size += 1;
+        }
+        saved = size;
+        exists = true;
+        if (HEADER_SIZE + size * RECORD_SIZE < file.length()) {
+            try (FileChannel out = FileChannel.open(file.toPath(),
+                    StandardOpenOption.WRITE)) {
+                out.truncate(HEADER_SIZE + size * RECORD_SIZE);
+            } catch (IOException excp) {
+                exists = false;
+            }
+        }
+    }
+
+    /** Return true iff record K agrees with the records before it. */
+    private boolean consistent(int k) {
+        int parent = parent(k);
+        int second = secondParent(k);
+        if (parent < -1 || parent >= k || second < -1 || second >= k
+                || (parent < 0 && second >= 0)) {
+            return false;
+        }
+        int generation = 1;
+        if (parent >= 0) {
+            generation = generation(parent) + 1;
+        }
+        if (second >= 0) {
+            generation = Math.max(generation, generation(second) + 1);
+        }
+        return generation(k) == generation;
+    }
+
+    /** Append the records of the commits in unread to the graph file,
+     *  reading only the records of their parents.  Return false, writing
+     *  nothing, if the file is missing or unusable or lacks a parent's
+     *  record. */
+    private static boolean appendUnread() {
+        File file = graphFile();
+        if (!file.exists()) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            if (channel.read(header, 0) < HEADER_SIZE
+                    || header.getInt(0) != MAGIC
+                    || header.getInt(Integer.BYTES) != VERSION) {
+                return false;
+            }
+            int n = (int) ((channel.size() - HEADER_SIZE) / RECORD_SIZE);
+            HashSet<String> parents = new HashSet<>();
+            for (Commit commit : unread.values()) {
+                parents.add(commit.getParentReference());
+                parents.add(commit.getSecondParentReference());
+            }
+            parents.remove("");
+            parents.removeAll(unread.keySet());
+            HashMap<String, int[]> found = findRecords(channel, n, parents);
+            if (found.size() < parents.size()) {
+                return false;
+            }
+
+            CommitGraph made = new CommitGraph();
+            for (Map.Entry<String, Commit> entry : unread.entrySet()) {
+                Commit commit = entry.getValue();
+                int[] parent = made.locate(commit.getParentReference(),
+                        n, found);
+                int[] second = made.locate(
+                        commit.getSecondParentReference(), n, found);
+                made.put(entry.getKey(), parent[0], second[0],
+                        commit.getTimeStamp(),
+                        Math.max(parent[1], second[1]) + 1,
+                        commit.getTreeReference());
+            }
+            ByteBuffer records = ByteBuffer.wrap(made.records.array(), 0,
+                    made.size * RECORD_SIZE);
+            long end = HEADER_SIZE + (long) n * RECORD_SIZE;
+            channel.truncate(end);
+            while (records.hasRemaining()) {
+                end += channel.write(records, end);
+            }
+            return true;
+        } catch (IOException excp) {
+            throw Utils.error("Could not save commit graph: %s",
+                    excp.getMessage());
+        }
+    }
+
+    /** Return the index and generation of the record of each commit
+     *  with one of the SHAS among the first N records of the graph file
+     *  open on CHANNEL, by SHA, reading the records from the last back
+     *  until all are found. */
+    private static HashMap<String, int[]> findRecords(
+            FileChannel channel, int n, Set<String> shas)
+        throws IOException {
+        HashMap<String, int[]> found = new HashMap<>();
+        ByteBuffer block = ByteBuffer.allocate(SCAN_RECORDS * RECORD_SIZE);
+        for (int end = n; end > 0 && found.size() < shas.size();
+             end -= SCAN_RECORDS) {
+            int start = Math.max(0, end - SCAN_RECORDS);
+            long position = HEADER_SIZE + (long) start * RECORD_SIZE;
+            block.clear().limit((end - start) * RECORD_SIZE);
+            while (block.hasRemaining()) {
+                if (channel.read(block, position + block.position()) < 0) {
+                    throw new IOException("commit graph shrank while read");
+                }
+            }
+            for (int k = end - 1; k >= start; k -= 1) {
+                int offset = (k - start) * RECORD_SIZE;
+                String sha = Utils.toHex(block.array(), offset,
+                        Codec.SHA_SIZE);
+                if (shas.contains(sha)) {
+                    found.putIfAbsent(sha, new int[] {
+                        k, block.getInt(offset + GENERATION)});
+                }
+            }
+        }
+        return found;
+    }
+
+    /** Return the index and generation of the record of the commit with
+     *  SHA, which follows N records in the file if it is in this graph, and
+     *  is otherwise in FOUND; or {-1, 0} if SHA is "". */
+    private int[] locate(String sha, int n, HashMap<String, int[]> found) {
+        if (sha.equals("")) {
+            return new int[] {-1, 0};
+        }
+        int k = find(sha);
+        if (k >= 0) {
+            return new int[] {n + k, generation(k)};
+        }
+        return found.get(sha);
+    }
+
+    /** Append the records not yet in the graph file to it, writing the
+     *  file afresh if it is missing or unusable. */
+    private void write() {
+        try {
+            if (!exists) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putInt(VERSION);
+                Utils.writeContentsAtomically(graphFile(), header.array());
+                saved = 0;
+                exists = true;
+            }
+            ByteBuffer pending = ByteBuffer.wrap(records.array(),
+                    saved * RECORD_SIZE, (size - saved) * RECORD_SIZE);
+            try (FileChannel out = FileChannel.open(graphFile().toPath(),
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                while (pending.hasRemaining()) {
+                    out.write(pending);
+                }
+            }
+            saved = size;
+        } catch (IOException | IllegalArgumentException excp) {
+            throw Utils.error("Could not save commit graph: %s",
+                    excp.getMessage());
+        }
+    }
+
+    /** Return the graph file. */
+    private static File graphFile() {
+        return new File(Utils.gitletPath(GRAPH_FILE));
+    }
+
+    /** The graph of the current repository, once read. */
+    private static CommitGraph graph;
+
+    /** The commits made, by SHA, in order, while the graph was not
+     *  read. */
+    private static final LinkedHashMap<String, Commit> unread =
+        new LinkedHashMap<>();
+
+    /** The records, one after another. */
+    private ByteBuffer records =
+        ByteBuffer.allocate(INITIAL_CAPACITY * RECORD_SIZE);
+
+    /** Number of records. */
+    private int size;
+
+    /** Number of records in the graph file. */
+    private int saved;
+
+    /** True iff the graph file exists and holds the first saved
+     *  records. */
+    private boolean exists;
+
+    /** The index of each commit's record, by SHA. */
+    private final HashMap<String, Integer> index = new HashMap<>();
+
+}
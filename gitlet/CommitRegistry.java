@@ -0,0 +1,194 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.function.Consumer;
+
+/** The registry of every commit in the repository: the raw SHAs of the
+ *  commits in .gitlet/commits, appended in the order they were made and
+ *  streamed, never read whole.
+ *  @author Ryan Brill
+ */
+class CommitRegistry {
+
+    /** Name of the registry file within .gitlet. */
+    static final String REGISTRY_FILE = "commits";
+
+    /** First four bytes of the registry file: "GREG". */
+    private static final int MAGIC = 0x47524547;
+
+    /** The format version written. */
+    private static final int VERSION = 1;
+
+    /** Length of the file's header: its magic and version. */
+    private static final int HEADER_SIZE = 8;
+
+    /** Return the registry of the current repository. */
+    static CommitRegistry get() {
+        if (registry == null) {
+            registry = new CommitRegistry();
+            registry.open();
+        }
+        return registry;
+    }
+
+    /** Forget the registry, so that the next command opens it again. */
+    static void reset() {
+        registry = null;
+    }
+
+    /** Append the commits added to the registry of the current repository,
+     *  if it was opened, to its file. */
+    static void saveIfChanged() {
+        if (registry != null && !registry.pending.isEmpty()) {
+            registry.write();
+        }
+    }
+
+    /** Bring the registry and id index of the repository whose tracker is
+     *  TRACKER up to date: move the commits TRACKER lists into the
+     *  registry, and build the id index again if it does not hold the
+     *  registry's commits. */
+    static void upgrade(Tracker tracker) {
+        ArrayList<String> listed = tracker.getListedCommits();
+        if (!registryFile().exists() || !listed.isEmpty()) {
+            CommitRegistry old = get();
+            LinkedHashSet<String> all = new LinkedHashSet<>();
+            old.forEach(all::add);
+            all.addAll(listed);
+            registry = new CommitRegistry();
+            registry.pending.addAll(all);
+            registry.write();
+            IdIndex.rebuild(all);
+            if (!listed.isEmpty()) {
+                tracker.clearListedCommits();
+                Journal.checkpoint(tracker);
+            }
+        } else if (!IdIndex.exists()
+                   || IdIndex.get().size() != get().size()) {
+            LinkedHashSet<String> all = new LinkedHashSet<>();
+            get().forEach(all::add);
+            IdIndex.rebuild(all);
+        }
+    }
+
+    /** Add the commit with SHA to the registry, unless it is there. */
+    void add(String sha) {
+        if (!contains(sha)) {
+            pending.add(sha);
+            IdIndex.get().add(sha);
+        }
+    }
+
+    /** Return true iff the commit with SHA is in the registry. */
+    boolean contains(String sha) {
+        return IdIndex.get().contains(sha);
+    }
+
+    /** Return the number of commits in the registry. */
+    long size() {
+        return (length - HEADER_SIZE) / Codec.SHA_SIZE + pending.size();
+    }
+
+    /** Apply ACTION to the SHA of each commit in the registry, in the
+     *  order they were made. */
+    void forEach(Consumer<String> action) {
+        File file = registryFile();
+        if (length > HEADER_SIZE) {
+            try (DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(file)))) {
+                in.skipNBytes(HEADER_SIZE);
+                byte[] raw = new byte[Codec.SHA_SIZE];
+                for (long n = size() - pending.size(); n > 0; n -= 1) {
+                    in.readFully(raw);
+                    action.accept(Utils.toHex(raw));
+                }
+            } catch (EOFException excp) {
+                throw Utils.error("Commit registry shrank while read.");
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+        for (String sha : new ArrayList<>(pending)) {
+            action.accept(sha);
+        }
+    }
+
+    /** Find the length of the registry file's complete SHAs.  It is 0 if
+     *  the file is missing or of another version, so that it is written
+     *  afresh. */
+    private void open() {
+        File file = registryFile();
+        if (!file.exists()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new FileInputStream(file))) {
+            if (file.length() < HEADER_SIZE || in.readInt() != MAGIC
+                    || in.readInt() != VERSION) {
+                return;
+            }
+        } catch (IOException excp) {
+            return;
+        }
+        length = HEADER_SIZE + (file.length() - HEADER_SIZE)
+            / Codec.SHA_SIZE * Codec.SHA_SIZE;
+    }
+
+    /** Append the pending SHAs to the registry file, writing it afresh if
+     *  it is missing or unusable. */
+    private void write() {
+        try {
+            if (length == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putInt(VERSION);
+                Utils.writeContentsAtomically(registryFile(),
+                        header.array());
+                length = HEADER_SIZE;
+            }
+            ByteBuffer bytes = ByteBuffer.allocate(
+                    pending.size() * Codec.SHA_SIZE);
+            for (String sha : pending) {
+                bytes.put(Pack.toRaw(sha));
+            }
+            bytes.flip();
+            try (FileChannel out = FileChannel.open(registryFile().toPath(),
+                    StandardOpenOption.WRITE)) {
+                out.position(length);
+                while (bytes.hasRemaining()) {
+                    out.write(bytes);
+                }
+                length = out.position();
+            }
+            pending.clear();
+        } catch (IOException | IllegalArgumentException excp) {
+            throw Utils.error("Could not save commit registry: %s",
+                    excp.getMessage());
+        }
+    }
+
+    /** Return the registry file. */
+    private static File registryFile() {
+        return new File(Utils.gitletPath(REGISTRY_FILE));
+    }
+
+    /** The registry of the current repository, once opened. */
+    private static CommitRegistry registry;
+
+    /** Length of the registry file's complete SHAs, or 0 if it must be
+     *  written afresh. */
+    private long length;
+
+    /** SHAs added and not yet written. */
+    private final ArrayList<String> pending = new ArrayList<>();
+
+}
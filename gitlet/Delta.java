@@ -0,0 +1,205 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/** Copy/insert deltas between two byte arrays, as stored in packs: the
+ *  lengths of the base and the result, then instructions that each copy a
+ *  range of the base or insert the bytes that follow them.
+ *  @author Ryan Brill
+ */
+class Delta {
+
+    /** Length of the blocks of the base that are indexed. */
+    static final int BLOCK = 16;
+
+    /** Instruction byte for a copy from the base. */
+    private static final int COPY = 0x80;
+
+    /** Longest run of bytes a single insert instruction holds. */
+    private static final int MAX_INSERT = 0x7f;
+
+    /** Multiplier of the rolling hash. */
+    private static final int MULT = 0x01000193;
+
+    /** MULT raised to the power BLOCK - 1. */
+    private static final int MULT_POW;
+
+    static {
+        int pow = 1;
+        for (int i = 1; i < BLOCK; i += 1) {
+            pow *= MULT;
+        }
+        MULT_POW = pow;
+    }
+
+    /** An index of the BLOCK-byte blocks of a base, used to find where
+     *  the base matches a target. */
+    static class Index {
+
+        /** An index of BASE. */
+        Index(byte[] base) {
+            this.base = base;
+            int blocks = base.length / BLOCK;
+            int size = 16;
+            while (size < 2 * blocks) {
+                size <<= 1;
+            }
+            table = new int[size];
+            mask = size - 1;
+            Arrays.fill(table, -1);
+            for (int b = blocks - 1; b >= 0; b -= 1) {
+                int pos = b * BLOCK;
+                table[mix(hash(base, pos)) & mask] = pos;
+            }
+        }
+
+        /** Return a base position whose block may have hash H, or -1. */
+        int lookup(int h) {
+            return table[mix(h) & mask];
+        }
+
+        /** The indexed base. */
+        private final byte[] base;
+
+        /** Hash table of block positions. */
+        private final int[] table;
+
+        /** Mask selecting a slot of table. */
+        private final int mask;
+    }
+
+    /** Return a delta that turns the base indexed by INDEX into TARGET,
+     *  or null if no delta shorter than MAXSIZE bytes was found. */
+    static byte[] create(Index index, byte[] target, int maxSize) {
+        byte[] base = index.base;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeVarint(out, base.length);
+        writeVarint(out, target.length);
+        int p = 0, pending = 0;
+        int h = target.length >= BLOCK ? hash(target, 0) : 0;
+        while (p + BLOCK <= target.length) {
+            int cand = index.lookup(h);
+            if (cand >= 0 && matches(base, cand, target, p)) {
+                int bs = cand, ts = p;
+                while (bs > 0 && ts > pending
+                        && base[bs - 1] == target[ts - 1]) {
+                    bs -= 1;
+                    ts -= 1;
+                }
+                int be = cand + BLOCK, te = p + BLOCK;
+                while (be < base.length && te < target.length
+                        && base[be] == target[te]) {
+                    be += 1;
+                    te += 1;
+                }
+                insert(out, target, pending, ts);
+                out.write(COPY);
+                writeVarint(out, bs);
+                writeVarint(out, te - ts);
+                if (out.size() >= maxSize) {
+                    return null;
+                }
+                p = pending = te;
+                if (p + BLOCK <= target.length) {
+                    h = hash(target, p);
+                }
+                continue;
+            }
+            if (p + BLOCK < target.length) {
+                h = (h - target[p] * MULT_POW) * MULT + target[p + BLOCK];
+            }
+            p += 1;
+        }
+        insert(out, target, pending, target.length);
+        return out.size() < maxSize ? out.toByteArray() : null;
+    }
+
+    /** Return the result of applying DELTA to BASE. */
+    static byte[] apply(byte[] base, byte[] delta) {
+        int[] pos = {0};
+        if (readVarint(delta, pos) != base.length) {
+            throw Utils.error("Delta does not match its base.");
+        }
+        byte[] result = new byte[readVarint(delta, pos)];
+        int r = 0;
+        while (pos[0] < delta.length) {
+            int op = delta[pos[0]] & 0xff;
+            pos[0] += 1;
+            if (op == COPY) {
+                int offset = readVarint(delta, pos);
+                int length = readVarint(delta, pos);
+                System.arraycopy(base, offset, result, r, length);
+                r += length;
+            } else {
+                System.arraycopy(delta, pos[0], result, r, op);
+                pos[0] += op;
+                r += op;
+            }
+        }
+        if (r != result.length) {
+            throw Utils.error("Corrupt delta.");
+        }
+        return result;
+    }
+
+    /** Write insert instructions for TARGET[FROM .. TO) to OUT. */
+    private static void insert(ByteArrayOutputStream out, byte[] target,
+                               int from, int to) {
+        while (from < to) {
+            int n = Math.min(MAX_INSERT, to - from);
+            out.write(n);
+            out.write(target, from, n);
+            from += n;
+        }
+    }
+
+    /** Return true iff the BLOCK bytes of BASE at BPOS equal those of
+     *  TARGET at TPOS. */
+    private static boolean matches(byte[] base, int bpos,
+                                   byte[] target, int tpos) {
+        for (int i = 0; i < BLOCK; i += 1) {
+            if (base[bpos + i] != target[tpos + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Return the rolling hash of the BLOCK bytes of DATA at POS. */
+    private static int hash(byte[] data, int pos) {
+        int h = 0;
+        for (int i = 0; i < BLOCK; i += 1) {
+            h = h * MULT + data[pos + i];
+        }
+        return h;
+    }
+
+    /** Return H with its bits mixed, for use as a table slot. */
+    private static int mix(int h) {
+        return h ^ (h >>> 15) ^ (h >>> 7);
+    }
+
+    /** Write the non-negative N to OUT as a varint. */
+    private static void writeVarint(ByteArrayOutputStream out, int n) {
+        while ((n & ~0x7f) != 0) {
+            out.write((n & 0x7f) | 0x80);
+            n >>>= 7;
+        }
+        out.write(n);
+    }
+
+    /** Return the varint in DATA at POS[0], advancing POS[0] past it. */
+    private static int readVarint(byte[] data, int[] pos) {
+        int n = 0;
+        for (int shift = 0;; shift += 7) {
+            int b = data[pos[0]] & 0xff;
+            pos[0] += 1;
+            n |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return n;
+            }
+        }
+    }
+
+}
@@ -1,40 +1,57 @@
 package gitlet;
 
 import java.io.Serializable;
+import java.util.List;
 
 /** The find command.
  *  @author Ryan Brill
  */
 class FindCommand implements Command, Serializable {
 
-    /** Find this logMessage L. */
-    FindCommand(String L) {
-        logMessage = L;
+    /** Find the commits matching A1, or, if A1 is --word, --substring or
+     *  --regex, the commits whose messages match A2 in that way. */
+    FindCommand(String A1, String A2) {
+        args1 = A1;
+        args2 = A2;
     }
 
     /** Return true iff N is the proper number of operands for this command. */
     public boolean properNumOperands(int n) {
-        return n == 2;
+        return n == 2 || n == 3;
     }
 
     /** Execute this command, using TRACKER. */
     public void execute(Tracker tracker) {
-        boolean found = false;
-
-        for (String commitRef : tracker.getAllCommits()) {
-            Commit C = Utils.shaToCommit(commitRef);
-            if (C.getLogMessage().equals(logMessage)) {
-                found = true;
-                System.out.println(commitRef);
-            }
+        CommitRegistry registry = CommitRegistry.get();
+        MessageIndex index = MessageIndex.get();
+        if (index.size() != registry.size()) {
+            index.rebuild(registry);
         }
 
-        if (!found) {
-            System.out.println("Found no commit with that message.");
-            System.exit(0);
+        List<String> matches;
+        if (args2.equals("")) {
+            matches = index.exact(args1);
+        } else if (args1.equals("--word")) {
+            matches = index.words(args2);
+        } else if (args1.equals("--substring")) {
+            matches = index.substring(args2);
+        } else if (args1.equals("--regex")) {
+            matches = index.regex(args2);
+        } else {
+            throw Utils.error("Incorrect operands.");
+        }
+
+        if (matches.isEmpty()) {
+            throw Utils.error("Found no commit with that message.");
+        }
+        for (String commitRef : matches) {
+            System.out.println(commitRef);
         }
     }
 
-    /** The desired Log Message. */
-    private String logMessage;
+    /** The message sought, or the kind of search. */
+    private String args1;
+
+    /** The text or pattern sought, or "". */
+    private String args2;
 }
@@ -0,0 +1,333 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/** The file system monitor: a watcher, started by the watch command, that
+ *  publishes a live listing of the working directory in .gitlet/fsmonitor,
+ *  and commands' view of it.  Without a live watcher, commands scan the
+ *  working directory as before.
+ *  @author Ryan Brill
+ */
+class FsMonitor {
+
+    /** Name of the snapshot file within .gitlet. */
+    static final String SNAPSHOT_FILE = "fsmonitor";
+
+    /** Milliseconds between the watcher's snapshots when nothing
+     *  changes. */
+    static final long HEARTBEAT_INTERVAL = 1000;
+
+    /** A snapshot older than this many milliseconds is stale. */
+    static final long STALE_AFTER = 3 * HEARTBEAT_INTERVAL;
+
+    /** Longest time in milliseconds a command waits for the watcher to
+     *  see its cookie. */
+    static final long COOKIE_TIMEOUT = 200;
+
+    /** Prefix of the names of cookie files. */
+    private static final String COOKIE_PREFIX = ".gitlet-cookie-";
+
+    /** First four bytes of a snapshot: "GFSM". */
+    private static final int MAGIC = 0x4746534d;
+
+    /** The format version written. */
+    private static final int VERSION = 1;
+
+    /* COMMANDS' VIEW. */
+
+    /** Return a snapshot of the working directory, synchronized with the
+     *  watcher, or null if there is no usable watcher.  The snapshot is
+     *  taken the first time this is called by a command. */
+    static FsMonitor snapshot() {
+        if (!queried) {
+            queried = true;
+            current = query();
+        }
+        return current;
+    }
+
+    /** Forget the snapshot taken, so that the next command takes its
+     *  own. */
+    static void reset() {
+        queried = false;
+        current = null;
+    }
+
+    /** Return a snapshot that has seen a fresh cookie, or null. */
+    private static FsMonitor query() {
+        File file = snapshotFile();
+        if (!file.exists()) {
+            return null;
+        }
+        String cookie = COOKIE_PREFIX + ProcessHandle.current().pid()
+            + "-" + System.nanoTime();
+        File cookieFile = new File(Utils.workingDirPath(cookie));
+        try {
+            if (!cookieFile.createNewFile()) {
+                return null;
+            }
+            long deadline = System.currentTimeMillis() + COOKIE_TIMEOUT;
+            do {
+                FsMonitor snapshot = read(file);
+                if (snapshot == null || snapshot.isStale()) {
+                    return null;
+                }
+                if (snapshot.cookie.equals(cookie)) {
+                    return snapshot;
+                }
+                Thread.sleep(1);
+            } while (System.currentTimeMillis() < deadline);
+            return null;
+        } catch (IOException | InterruptedException excp) {
+            return null;
+        } finally {
+            cookieFile.delete();
+        }
+    }
+
+    /** Return the names in the working directory, as
+     *  Utils.workingDirFileNames would list them. */
+    Set<String> fileNames() {
+        return Collections.unmodifiableSet(changed.keySet());
+    }
+
+    /** Return true iff this snapshot comes from the same watcher as the
+     *  token EPOCH and BATCH and FILENAME, which must exist, has not
+     *  changed since. */
+    boolean unchangedSince(long epoch, long batch, String fileName) {
+        Long last = changed.get(fileName);
+        return epoch == this.epoch && last != null && last <= batch;
+    }
+
+    /** Return the epoch of this snapshot's watcher. */
+    long epoch() {
+        return epoch;
+    }
+
+    /** Return the number of the last batch this snapshot includes. */
+    long batch() {
+        return batch;
+    }
+
+    /** Return true iff this snapshot is too old to be trusted. */
+    private boolean isStale() {
+        return System.currentTimeMillis() - heartbeat > STALE_AFTER;
+    }
+
+    /* THE WATCHER. */
+
+    /** Watch the working directory and publish snapshots until the
+     *  repository goes away. */
+    static void watch() {
+        File lockFile = new File(Utils.gitletPath(SNAPSHOT_FILE + ".lock"));
+        try (FileChannel lockChannel = FileChannel.open(lockFile.toPath(),
+                StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+             FileLock lock = lockChannel.tryLock()) {
+            if (lock == null) {
+                throw Utils.error("A watcher is already running.");
+            }
+            FsMonitor monitor = new FsMonitor();
+            monitor.epoch = new Random().nextLong();
+            monitor.cookie = "";
+            Thread cleanup = new Thread(() -> snapshotFile().delete());
+            Runtime.getRuntime().addShutdownHook(cleanup);
+            monitor.run();
+        } catch (IOException excp) {
+            throw Utils.error("Could not watch: %s", excp.getMessage());
+        }
+    }
+
+    /** Follow the working directory, publishing snapshots. */
+    private void run() throws IOException {
+        try (WatchService service = FileSystems.getDefault()
+                .newWatchService()) {
+            watcher = service;
+            rescan();
+            publish();
+            while (new File(Utils.gitletPath(".")).isDirectory()) {
+                WatchKey key = watcher.poll(HEARTBEAT_INTERVAL,
+                        TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    batch += 1;
+                    for (; key != null; key = watcher.poll()) {
+                        handle(key);
+                        if (!key.reset() && "".equals(dirs.remove(key))) {
+                            return;
+                        }
+                    }
+                }
+                publish();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException excp) {
+            return;
+        }
+    }
+
+    /** Watch DIR, whose path is PREFIX, and the directories under it. */
+    private void watchAll(File dir, String prefix) throws IOException {
+        WatchKey key = dir.toPath().register(watcher,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        dirs.put(key, prefix);
+        File[] listing = dir.listFiles();
+        if (listing == null) {
+            return;
+        }
+        for (File file : listing) {
+            if (file.isDirectory() && !file.getName().startsWith(".")) {
+                watchAll(file, prefix + file.getName() + Tree.SEPARATOR);
+            }
+        }
+    }
+
+    /** Record the events of KEY in the current batch. */
+    private void handle(WatchKey key) throws IOException {
+        String prefix = dirs.getOrDefault(key, "");
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                rescan();
+                continue;
+            }
+            String name = event.context().toString();
+            String path = prefix + name;
+            File file = new File(Utils.workingDirPath(path));
+            if (name.startsWith(COOKIE_PREFIX) && prefix.equals("")) {
+                if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                    cookie = name;
+                }
+            } else if (name.startsWith(".")) {
+                continue;
+            } else if (file.isDirectory()) {
+                if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                    String dirPrefix = path + Tree.SEPARATOR;
+                    watchAll(file, dirPrefix);
+                    HashSet<String> added = new HashSet<>();
+                    Utils.scanWorkingDir(file, dirPrefix, added);
+                    for (String fileName : added) {
+                        changed.put(fileName, batch);
+                    }
+                }
+            } else if (file.exists()) {
+                changed.put(path, batch);
+            } else {
+                changed.remove(path);
+                changed.keySet().removeIf(fileName ->
+                    fileName.startsWith(path + Tree.SEPARATOR));
+            }
+        }
+    }
+
+    /** List the working directory afresh, watching every directory in it
+     *  and marking every file as changed in the current batch. */
+    private void rescan() throws IOException {
+        watchAll(new File(Utils.workingDirPath(".")), "");
+        changed.clear();
+        for (String name : Utils.scanWorkingDir()) {
+            changed.put(name, batch);
+        }
+    }
+
+    /** Write the current snapshot. */
+    private void publish() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(System.currentTimeMillis());
+            out.writeUTF(cookie);
+            out.writeLong(epoch);
+            out.writeLong(batch);
+            out.writeInt(changed.size());
+            for (String name : changed.keySet()) {
+                out.writeUTF(name);
+                out.writeLong(changed.get(name));
+            }
+        }
+        File file = snapshotFile();
+        File temp = new File(file.getPath() + ".new");
+        Files.write(temp.toPath(), bytes.toByteArray());
+        Files.move(temp.toPath(), file.toPath(),
+                StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /** Return the snapshot in FILE, or null if it cannot be read. */
+    private static FsMonitor read(File file) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+                    Files.readAllBytes(file.toPath())));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            FsMonitor snapshot = new FsMonitor();
+            snapshot.heartbeat = in.readLong();
+            snapshot.cookie = in.readUTF();
+            snapshot.epoch = in.readLong();
+            snapshot.batch = in.readLong();
+            int n = in.readInt();
+            for (int i = 0; i < n; i += 1) {
+                snapshot.changed.put(in.readUTF(), in.readLong());
+            }
+            return snapshot;
+        } catch (IOException excp) {
+            return null;
+        }
+    }
+
+    /** Return the snapshot file. */
+    private static File snapshotFile() {
+        return new File(Utils.gitletPath(SNAPSHOT_FILE));
+    }
+
+    /** True iff a command has asked for a snapshot. */
+    private static boolean queried;
+
+    /** The snapshot a command got, or null. */
+    private static FsMonitor current;
+
+    /** Epoch of the watcher. */
+    private long epoch;
+
+    /** Number of the current batch of events. */
+    private long batch;
+
+    /** When the snapshot was written, in milliseconds since the epoch. */
+    private long heartbeat;
+
+    /** Name of the last cookie the watcher saw. */
+    private String cookie;
+
+    /** The watcher's service, while it runs. */
+    private WatchService watcher;
+
+    /** The path of the directory each of the watcher's keys watches. */
+    private final HashMap<WatchKey, String> dirs = new HashMap<>();
+
+    /** The batch in which each file in the working directory last
+     *  changed, by name. */
+    private final HashMap<String, Long> changed = new HashMap<>();
+
+}
@@ -1,6 +1,5 @@
 package gitlet;
 
-import java.io.File;
 import java.io.Serializable;
 
 /** The global-log command.
@@ -15,10 +14,9 @@ class GlobalLogCommand implements Command, Serializable {
 
     /** Execute this command, using TRACKER. */
     public void execute(Tracker tracker) {
-        for (String commitRef : tracker.getAllCommits()) {
-            Commit C = Utils.readObject(
-                    new File(Utils.gitletPath(commitRef)), Commit.class);
+        CommitRegistry.get().forEach(commitRef -> {
+            Commit C = Utils.shaToCommit(commitRef);
             System.out.println(C);
-        }
+        });
     }
 }
@@ -0,0 +1,244 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/** The index of commit IDs in .gitlet/ids, by which abbreviated commit IDs
+ *  are resolved: a sorted run of raw SHAs, searched by bisection, followed
+ *  by at most MAX_UNSORTED SHAs appended since.
+ *  @author Ryan Brill
+ */
+class IdIndex {
+
+    /** Name of the index file within .gitlet. */
+    static final String INDEX_FILE = "ids";
+
+    /** Most SHAs kept after the sorted run. */
+    static final int MAX_UNSORTED = 256;
+
+    /** First four bytes of the index file: "GIDX". */
+    private static final int MAGIC = 0x47494458;
+
+    /** The format version written. */
+    private static final int VERSION = 1;
+
+    /** Length of the file's header: its magic, version and the length of
+     *  its sorted run. */
+    private static final int HEADER_SIZE = 12;
+
+    /** Return the index of the current repository, reading it the first
+     *  time. */
+    static IdIndex get() {
+        if (index == null) {
+            index = new IdIndex();
+            index.read();
+        }
+        return index;
+    }
+
+    /** Forget the index read, so that the next command reads it again. */
+    static void reset() {
+        index = null;
+    }
+
+    /** Return true iff the current repository has an index file. */
+    static boolean exists() {
+        return indexFile().exists();
+    }
+
+    /** Write the index of the current repository afresh, holding the
+     *  commits with SHAS, which must be all of them. */
+    static void rebuild(Collection<String> shas) {
+        IdIndex rebuilt = new IdIndex();
+        rebuilt.unsorted.addAll(shas);
+        rebuilt.write(true);
+        index = null;
+    }
+
+    /** Write the SHAs added to the index of the current repository, if it
+     *  was read, to its file. */
+    static void saveIfChanged() {
+        if (index != null && index.saved < index.unsorted.size()) {
+            index.write(index.unsorted.size() > MAX_UNSORTED);
+        }
+    }
+
+    /** Add the commit with SHA to the index, unless it is there. */
+    void add(String sha) {
+        if (!contains(sha)) {
+            unsorted.add(sha);
+        }
+    }
+
+    /** Return the number of commits in the index. */
+    int size() {
+        return count + unsorted.size();
+    }
+
+    /** Return true iff SHA is the SHA of a commit. */
+    boolean contains(String sha) {
+        return sha.length() == Utils.UID_LENGTH
+            && matches(sha, 1).size() == 1;
+    }
+
+    /** Return the SHA of the one commit whose SHA starts with PREFIX. */
+    String resolve(String prefix) {
+        List<String> found = matches(prefix, 2);
+        if (found.isEmpty()) {
+            throw Utils.error("No commit with that id exists.");
+        }
+        if (found.size() > 1) {
+            throw Utils.error("Ambiguous commit id.");
+        }
+        return found.get(0);
+    }
+
+    /** Return the SHAs of up to LIMIT commits starting with PREFIX. */
+    private List<String> matches(String prefix, int limit) {
+        ArrayList<String> found = new ArrayList<>();
+        int lo = 0;
+        int hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sha(mid).compareTo(prefix) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        for (int k = lo; k < count && found.size() < limit; k += 1) {
+            String sha = sha(k);
+            if (!sha.startsWith(prefix)) {
+                break;
+            }
+            found.add(sha);
+        }
+        for (String sha : unsorted) {
+            if (found.size() < limit && sha.startsWith(prefix)) {
+                found.add(sha);
+            }
+        }
+        return found;
+    }
+
+    /** Return the Kth SHA of the sorted run. */
+    private String sha(int k) {
+        byte[] raw = new byte[Codec.SHA_SIZE];
+        sorted.get(HEADER_SIZE + k * Codec.SHA_SIZE, raw);
+        return Utils.toHex(raw);
+    }
+
+    /** Map the index file and read the SHAs after its sorted run.  The
+     *  index is empty if the file is missing or unreadable. */
+    private void read() {
+        File file = indexFile();
+        if (!file.exists()) {
+            return;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            FileChannel channel = raf.getChannel();
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY,
+                    0, channel.size());
+            if (map.limit() < HEADER_SIZE || map.getInt(0) != MAGIC
+                    || map.getInt(4) != VERSION) {
+                return;
+            }
+            int n = map.getInt(8);
+            int total = (map.limit() - HEADER_SIZE) / Codec.SHA_SIZE;
+            if (n < 0 || n > total) {
+                return;
+            }
+            sorted = map;
+            count = n;
+            for (int k = n; k < total; k += 1) {
+                unsorted.add(sha(k));
+            }
+            saved = unsorted.size();
+            length = HEADER_SIZE + (long) total * Codec.SHA_SIZE;
+        } catch (IOException excp) {
+            count = 0;
+            unsorted.clear();
+        }
+    }
+
+    /** Write the SHAs not yet in the index file to it.  If SORT, or the
+     *  file is missing or unusable, write all SHAs afresh as one sorted
+     *  run. */
+    private void write(boolean sort) {
+        try {
+            if (sort || length == 0) {
+                ArrayList<String> all = new ArrayList<>(unsorted);
+                for (int k = 0; k < count; k += 1) {
+                    all.add(sha(k));
+                }
+                Collections.sort(all);
+                ByteBuffer bytes = ByteBuffer.allocate(
+                        HEADER_SIZE + all.size() * Codec.SHA_SIZE);
+                bytes.putInt(MAGIC).putInt(VERSION).putInt(all.size());
+                for (String sha : all) {
+                    bytes.put(Pack.toRaw(sha));
+                }
+                Utils.writeContentsAtomically(indexFile(), bytes.array());
+                sorted = null;
+                count = 0;
+                unsorted.clear();
+                length = 0;
+                read();
+            } else {
+                ByteBuffer bytes = ByteBuffer.allocate(
+                        (unsorted.size() - saved) * Codec.SHA_SIZE);
+                for (String sha : unsorted.subList(saved,
+                        unsorted.size())) {
+                    bytes.put(Pack.toRaw(sha));
+                }
+                bytes.flip();
+                try (FileChannel out = FileChannel.open(
+                        indexFile().toPath(), StandardOpenOption.WRITE)) {
+                    out.position(length);
+                    while (bytes.hasRemaining()) {
+                        out.write(bytes);
+                    }
+                    length = out.position();
+                }
+            }
+            saved = unsorted.size();
+        } catch (IOException | IllegalArgumentException excp) {
+            throw Utils.error("Could not save commit ids: %s",
+                    excp.getMessage());
+        }
+    }
+
+    /** Return the index file. */
+    private static File indexFile() {
+        return new File(Utils.gitletPath(INDEX_FILE));
+    }
+
+    /** The index of the current repository, once read. */
+    private static IdIndex index;
+
+    /** The index file, mapped, or null. */
+    private ByteBuffer sorted;
+
+    /** Number of SHAs in the sorted run. */
+    private int count;
+
+    /** SHAs after the sorted run, in the order they were added. */
+    private final ArrayList<String> unsorted = new ArrayList<>();
+
+    /** Number of the SHAs after the sorted run that are in the file. */
+    private int saved;
+
+    /** Length of the index file's complete SHAs, or 0 if it must be
+     *  written afresh. */
+    private long length;
+
+}
@@ -5,6 +5,7 @@ import java.io.Serializable;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.ArrayList;
 
 /** The init command.
  *  @author Ryan Brill
@@ -19,12 +20,18 @@ class InitCommand implements Command, Serializable {
     /** Execute this command, using TRACKER. */
     public void execute(Tracker tracker) {
         (new File(Utils.gitletPath(""))).mkdir();
+        ObjectStore.create();
 
         Commit initialCommit = new Commit(
             "initial commit", LocalDateTime.ofInstant(
                 Instant.EPOCH, ZoneId.of("America/Los_Angeles")), "");
 
-        Utils.writeObject(initialCommit);
+        String initialCommitSha = Utils.writeObject(initialCommit);
+        CommitGraph.append(initialCommitSha, initialCommit);
+        ChangedPaths.get().add(initialCommitSha, new ArrayList<>());
+        MessageIndex.get().add(initialCommitSha,
+                initialCommit.getLogMessage());
+        CommitRegistry.get().add(initialCommitSha);
 
         Main.initializeTracker(initialCommit);
     }
@@ -0,0 +1,302 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/** The journal of changes made to the tracker since its last checkpoint:
+ *  one checksummed entry of records per command, replayed onto the
+ *  checkpoint when the repository is opened.  An entry cut short by a
+ *  crash is dropped with anything after it.
+ *  @author Ryan Brill
+ */
+class Journal {
+
+    /** Number of entries after which a checkpoint is written. */
+    static final int CHECKPOINT_INTERVAL = 100;
+
+    /** Name of the checkpoint file within .gitlet. */
+    static final String TRACKER_FILE = "tracker";
+
+    /** Name of the journal file within .gitlet. */
+    static final String JOURNAL_FILE = "journal";
+
+    /** First four bytes of a journal: "GJNL". */
+    private static final int MAGIC = 0x474a4e4c;
+
+    /** Length of a journal's header: its magic and checkpoint number. */
+    private static final int HEADER_SIZE = 12;
+
+    /** Length of an entry's header: its length and CRC. */
+    private static final int ENTRY_HEADER_SIZE = 8;
+
+    /** Record: a file was staged.  Operands: file name, blob SHA. */
+    static final byte STAGE = 1;
+
+    /** Record: a file was unstaged.  Operand: file name. */
+    static final byte UNSTAGE = 2;
+
+    /** Record: the staging area was cleared. */
+    static final byte CLEAR_STAGE = 3;
+
+    /** Record: a file was staged for removal.  Operand: file name. */
+    static final byte REMOVE = 4;
+
+    /** Record: a removal was cancelled.  Operand: file name. */
+    static final byte CANCEL_REMOVAL = 5;
+
+    /** Record: the removals were cleared. */
+    static final byte CLEAR_REMOVALS = 6;
+
+    /** Record: a branch was created or moved.  Operands: branch name,
+     *  commit SHA. */
+    static final byte SET_BRANCH = 7;
+
+    /** Record: a branch was deleted.  Operand: branch name. */
+    static final byte DELETE_BRANCH = 8;
+
+    /** Record: the current branch changed.  Operand: branch name. */
+    static final byte CURRENT_BRANCH = 9;
+
+    /** Record: a commit was made, in journals written before the commit
+     *  registry, which now records commits.  Operand: commit SHA. */
+    static final byte ADD_COMMIT = 10;
+
+    /** Record: a remote was added.  Operands: name, path. */
+    static final byte ADD_REMOTE = 11;
+
+    /** Return the repository's tracker: its last checkpoint with the
+     *  journal replayed on it.  Changes later made to the tracker are
+     *  recorded in a journal attached to it. */
+    static Tracker open() {
+        Tracker tracker = Codec.decodeTracker(
+                Utils.readContents(trackerFile()));
+        Journal journal = new Journal(tracker);
+        journal.replay();
+        tracker.setJournal(journal);
+        return tracker;
+    }
+
+    /** Save the changes made to TRACKER: append them to its journal, or
+     *  write TRACKER as a new checkpoint if it has none. */
+    static void save(Tracker tracker) {
+        if (tracker.getJournal() == null) {
+            checkpoint(tracker);
+        } else {
+            tracker.getJournal().commit();
+        }
+    }
+
+    /** Write TRACKER as the next checkpoint and start an empty journal. */
+    static void checkpoint(Tracker tracker) {
+        tracker.setCheckpoint(tracker.getCheckpoint() + 1);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putLong(tracker.getCheckpoint());
+        try {
+            Utils.writeContentsAtomically(trackerFile(),
+                    Codec.encode(tracker));
+            Utils.writeContentsAtomically(journalFile(), header.array());
+        } catch (IllegalArgumentException excp) {
+            throw Utils.error("Could not save tracker: %s",
+                    excp.getMessage());
+        }
+    }
+
+    /** Return a string that changes whenever the checkpoint or journal
+     *  is written. */
+    static String stamp() {
+        File tracker = trackerFile();
+        File journal = journalFile();
+        return tracker.length() + ":" + tracker.lastModified() + ":"
+            + journal.length() + ":" + journal.lastModified();
+    }
+
+    /** A journal for TRACKER, which holds the last checkpoint. */
+    private Journal(Tracker tracker) {
+        this.tracker = tracker;
+    }
+
+    /** Record that operation OP was applied to the tracker with
+     *  OPERANDS. */
+    void record(byte op, String... operands) {
+        try {
+            pendingOut.writeByte(op);
+            pendingOut.writeByte(operands.length);
+            for (String operand : operands) {
+                pendingOut.writeUTF(operand);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Append the records made since the last call as one entry, forced to
+     *  disk, and write a checkpoint instead if one is due. */
+    void commit() {
+        if (pending.size() == 0) {
+            return;
+        }
+        if (!valid || entries + 1 >= CHECKPOINT_INTERVAL) {
+            checkpoint(tracker);
+            valid = true;
+            entries = 0;
+            pending.reset();
+            return;
+        }
+        byte[] records = pending.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(records);
+        ByteBuffer entry = ByteBuffer.allocate(
+                ENTRY_HEADER_SIZE + records.length);
+        entry.putInt(records.length).putInt((int) crc.getValue());
+        entry.put(records).flip();
+        try (FileChannel out = FileChannel.open(journalFile().toPath(),
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            while (entry.hasRemaining()) {
+                out.write(entry);
+            }
+            out.force(false);
+        } catch (IOException excp) {
+            throw Utils.error("Could not save tracker: %s",
+                    excp.getMessage());
+        }
+        entries += 1;
+        pending.reset();
+    }
+
+    /** Apply the entries of the journal to the tracker.  If the journal
+     *  ends in a damaged entry, cut it off there. */
+    private void replay() {
+        File file = journalFile();
+        if (!file.exists()) {
+            return;
+        }
+        ByteBuffer journal = ByteBuffer.wrap(Utils.readContents(file));
+        if (journal.remaining() < HEADER_SIZE || journal.getInt() != MAGIC
+                || journal.getLong() != tracker.getCheckpoint()) {
+            return;
+        }
+        valid = true;
+        int end = journal.position();
+        while (journal.remaining() >= ENTRY_HEADER_SIZE) {
+            int length = journal.getInt();
+            int check = journal.getInt();
+            if (length < 0 || length > journal.remaining()) {
+                break;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(journal.array(), journal.position(), length);
+            if ((int) crc.getValue() != check) {
+                break;
+            }
+            apply(journal.array(), journal.position(), length);
+            journal.position(journal.position() + length);
+            end = journal.position();
+            entries += 1;
+        }
+        if (end < journal.limit()) {
+            try (FileChannel out = FileChannel.open(file.toPath(),
+                    StandardOpenOption.WRITE)) {
+                out.truncate(end);
+            } catch (IOException excp) {
+                valid = false;
+            }
+        }
+    }
+
+    /** Apply the records in the LENGTH bytes of BYTES at OFFSET. */
+    private void apply(byte[] bytes, int offset, int length) {
+        DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(bytes, offset, length));
+        try {
+            while (in.available() > 0) {
+                byte op = in.readByte();
+                String[] operands = new String[in.readUnsignedByte()];
+                for (int i = 0; i < operands.length; i += 1) {
+                    operands[i] = in.readUTF();
+                }
+                apply(op, operands);
+            }
+        } catch (EOFException excp) {
+            throw Utils.error("Corrupt journal.");
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Apply operation OP with OPERANDS to the tracker. */
+    private void apply(byte op, String[] operands) {
+        switch (op) {
+        case STAGE:
+            tracker.stage(operands[0], operands[1]);
+            break;
+        case UNSTAGE:
+            tracker.removeFromStage(operands[0]);
+            break;
+        case CLEAR_STAGE:
+            tracker.clearStage();
+            break;
+        case REMOVE:
+            tracker.remove(operands[0]);
+            break;
+        case CANCEL_REMOVAL:
+            tracker.cancelRemoval(operands[0]);
+            break;
+        case CLEAR_REMOVALS:
+            tracker.clearRemoveThese();
+            break;
+        case SET_BRANCH:
+            tracker.setBranchReference(operands[0], operands[1]);
+            break;
+        case DELETE_BRANCH:
+            tracker.deleteBranch(operands[0]);
+            break;
+        case CURRENT_BRANCH:
+            tracker.changeCurrentBranchName(operands[0]);
+            break;
+        case ADD_COMMIT:
+            tracker.listCommit(operands[0]);
+            break;
+        case ADD_REMOTE:
+            tracker.addRemote(operands[0], operands[1]);
+            break;
+        default:
+            throw Utils.error("Corrupt journal.");
+        }
+    }
+
+    /** Return the checkpoint file. */
+    static File trackerFile() {
+        return new File(Utils.gitletPath(TRACKER_FILE));
+    }
+
+    /** Return the journal file. */
+    private static File journalFile() {
+        return new File(Utils.gitletPath(JOURNAL_FILE));
+    }
+
+    /** The tracker whose changes are journaled. */
+    private final Tracker tracker;
+
+    /** True iff the journal file follows the tracker's checkpoint, so
+     *  that entries may be appended to it. */
+    private boolean valid;
+
+    /** Number of entries in the journal. */
+    private int entries;
+
+    /** Records not yet appended. */
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+
+    /** Writes into pending. */
+    private final DataOutputStream pendingOut = new DataOutputStream(pending);
+
+}
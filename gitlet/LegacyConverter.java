@@ -0,0 +1,233 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/** Converts a repository stored with Java serialization to the encodings
+ *  of Codec, giving every object its new SHA; an interrupted conversion is
+ *  simply redone.
+ *  @author Ryan Brill
+ */
+class LegacyConverter {
+
+    /** First byte of every Java serialization stream. */
+    private static final int SERIAL_MAGIC = 0xac;
+
+    /** Return true iff the repository's tracker is Java-serialized. */
+    static boolean isLegacy() {
+        try (InputStream in = new FileInputStream(trackerFile())) {
+            return in.read() == SERIAL_MAGIC;
+        } catch (IOException excp) {
+            return false;
+        }
+    }
+
+    /** Convert the repository to the current encodings. */
+    static void convert() {
+        LegacyConverter converter = new LegacyConverter();
+        converter.run();
+    }
+
+    /** Perform the conversion. */
+    private void run() {
+        OldTracker old = read(Utils.readContents(trackerFile()),
+                OldTracker.class);
+        List<String> oldObjects = ObjectStore.looseObjects();
+        List<Pack> oldPacks = new ArrayList<>(ObjectStore.packs());
+
+        ArrayList<String> allCommits = new ArrayList<>();
+        for (String commitSha : old.allCommits) {
+            allCommits.add(convertCommit(commitSha));
+        }
+        HashMap<String, String> branches = new HashMap<>();
+        for (Map.Entry<String, String> entry : old.branches.entrySet()) {
+            branches.put(entry.getKey(), convertCommit(entry.getValue()));
+        }
+        HashMap<String, String> stagingArea = new HashMap<>();
+        for (Map.Entry<String, String> entry : old.stagingArea.entrySet()) {
+            stagingArea.put(entry.getKey(), convertBlob(entry.getValue()));
+        }
+        Tracker tracker = new Tracker(old.currentBranchName, branches,
+                stagingArea, new ArrayList<>(old.removeThese), allCommits,
+                new HashMap<>(old.remotes));
+
+        try {
+            File temp = new File(Utils.gitletPath("tracker.new"));
+            Utils.writeContents(temp, Codec.encode(tracker));
+            Files.move(temp.toPath(), trackerFile().toPath(),
+                    StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException excp) {
+            throw Utils.error("Could not convert tracker: %s",
+                    excp.getMessage());
+        }
+
+        for (String sha : oldObjects) {
+            if (!converted.contains(sha)) {
+                ObjectStore.objectFile(sha).delete();
+            }
+        }
+        for (Pack pack : oldPacks) {
+            String base = pack.name().replaceAll("\\.pack$", "");
+            new File(ObjectStore.packDir(), base + ".idx").delete();
+            new File(ObjectStore.packDir(), base + ".pack").delete();
+        }
+        ObjectStore.reloadPacks();
+    }
+
+    /** Convert the old commit with SHA, and its ancestors, if not done
+     *  already.  Return the new SHA of the commit.  The ancestors are
+     *  converted oldest first from a stack rather than by recursion, so a
+     *  long history cannot overflow the call stack.  Old commits have at
+     *  most one parent. */
+    private String convertCommit(String sha) {
+        HashMap<String, OldCommit> read = new HashMap<>();
+        ArrayDeque<String> pending = new ArrayDeque<>();
+        pending.push(sha);
+        while (!pending.isEmpty()) {
+            String next = pending.peek();
+            if (newShas.containsKey(next)) {
+                pending.pop();
+                continue;
+            }
+            OldCommit old = read.get(next);
+            if (old == null) {
+                old = read(ObjectStore.readContents(next), OldCommit.class);
+                read.put(next, old);
+            }
+            String parent = old.parentReference;
+            if (!parent.isEmpty() && !newShas.containsKey(parent)) {
+                pending.push(parent);
+                continue;
+            }
+            Commit commit = new Commit(old.logMessage, old.timeStamp,
+                    parent.isEmpty() ? "" : newShas.get(parent));
+            for (Map.Entry<String, String> entry : old.blobMap.entrySet()) {
+                commit.addToBlobMap(entry.getKey(),
+                        convertBlob(entry.getValue()));
+            }
+            record(next, Utils.writeObject(commit));
+            pending.pop();
+        }
+        return newShas.get(sha);
+    }
+
+    /** Convert the old blob with SHA if not done already, and return its
+     *  new SHA. */
+    private String convertBlob(String sha) {
+        String newSha = newShas.get(sha);
+        if (newSha != null) {
+            return newSha;
+        }
+        OldBlob old = read(ObjectStore.readContents(sha), OldBlob.class);
+        newSha = Utils.writeObject(new Blob(old.contents));
+        record(sha, newSha);
+        return newSha;
+    }
+
+    /** Record that the object with OLDSHA was converted to NEWSHA. */
+    private void record(String oldSha, String newSha) {
+        newShas.put(oldSha, newSha);
+        converted.add(newSha);
+    }
+
+    /** Return the Java-serialized object in BYTES as an instance of
+     *  EXPECTEDCLASS, one of the stand-in classes below. */
+    private static <T> T read(byte[] bytes, Class<T> expectedClass) {
+        try (ObjectInputStream in =
+                 new StandInInputStream(new ByteArrayInputStream(bytes))) {
+            return expectedClass.cast(in.readObject());
+        } catch (IOException | ClassCastException
+                 | ClassNotFoundException excp) {
+            throw Utils.error("Could not convert object: %s",
+                    excp.getMessage());
+        }
+    }
+
+    /** Return the tracker file. */
+    private static File trackerFile() {
+        return new File(Utils.gitletPath("tracker"));
+    }
+
+    /** New SHAs of the old objects converted so far. */
+    private final HashMap<String, String> newShas = new HashMap<>();
+
+    /** SHAs of the objects written by the conversion. */
+    private final HashSet<String> converted = new HashSet<>();
+
+    /** Reads Java-serialized Commits, Blobs and Trackers as the stand-in
+     *  classes below, which have the same fields. */
+    private static class StandInInputStream extends ObjectInputStream {
+
+        /** A stream reading serialized objects from IN. */
+        StandInInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected ObjectStreamClass readClassDescriptor()
+            throws IOException, ClassNotFoundException {
+            ObjectStreamClass desc = super.readClassDescriptor();
+            switch (desc.getName()) {
+            case "gitlet.Commit":
+                return ObjectStreamClass.lookup(OldCommit.class);
+            case "gitlet.Blob":
+                return ObjectStreamClass.lookup(OldBlob.class);
+            case "gitlet.Tracker":
+                return ObjectStreamClass.lookup(OldTracker.class);
+            default:
+                return desc;
+            }
+        }
+    }
+
+    /** The fields of a serialized Commit. */
+    private static class OldCommit implements Serializable {
+        /** Tracked files and their blob SHAs. */
+        private HashMap<String, String> blobMap;
+        /** The parent's SHA, or "". */
+        private String parentReference;
+        /** When the commit was made. */
+        private LocalDateTime timeStamp;
+        /** The commit message. */
+        private String logMessage;
+    }
+
+    /** The fields of a serialized Blob. */
+    private static class OldBlob implements Serializable {
+        /** The file contents. */
+        private byte[] contents;
+    }
+
+    /** The fields of a serialized Tracker. */
+    private static class OldTracker implements Serializable {
+        /** Branch heads. */
+        private HashMap<String, String> branches;
+        /** The current branch. */
+        private String currentBranchName;
+        /** Files staged for removal. */
+        private ArrayList<String> removeThese;
+        /** Files staged for addition. */
+        private HashMap<String, String> stagingArea;
+        /** Every commit, oldest first. */
+        private ArrayList<String> allCommits;
+        /** Remote repositories. */
+        private HashMap<String, String> remotes;
+    }
+
+}
@@ -1,6 +1,5 @@
 package gitlet;
 
-import java.io.File;
 import java.io.Serializable;
 
 /** The init command.
@@ -8,29 +7,53 @@ import java.io.Serializable;
  */
 class LogCommand implements Command, Serializable {
 
+    /** Set (A1, A2) to be the arguments of this log command. */
+    LogCommand(String A1, String A2) {
+        args1 = A1;
+        args2 = A2;
+    }
+
     /** Return true iff N is the proper number of operands for this command. */
     public boolean properNumOperands(int n) {
-        return n == 1;
+        return n == 1 || n == 3;
     }
 
     /** Execute this command, using TRACKER. */
     public void execute(Tracker tracker) {
         String headCommitSha = tracker.getCurrentBranchReference();
-        Commit headCommit = Utils.readObject(
-                new File(Utils.gitletPath(headCommitSha)), Commit.class);
-        if (headCommit == null) {
-            return;
+        if (args1.equals("")) {
+            CommitGraph graph = CommitGraph.get();
+            for (int k = graph.lookup(headCommitSha); k >= 0;
+                 k = graph.parent(k)) {
+                System.out.println(Utils.shaToCommit(graph.sha(k)));
+            }
+        } else if (args1.equals("--") && !args2.equals("")) {
+            logPath(headCommitSha, args2);
+        } else {
+            throw Utils.error("Incorrect operands.");
         }
-        Commit current = headCommit;
-        while (true) {
-            System.out.println(current);
-            String parentSha = current.getParentReference();
-            if (parentSha.equals("")) {
-                break;
+    }
+
+    /** Print the commits from HEADCOMMITSHA back to the initial commit that
+     *  added, changed or removed the file named PATH.  Only the commits
+     *  whose changed-path filters may hold PATH are read. */
+    private void logPath(String headCommitSha, String path) {
+        CommitGraph graph = CommitGraph.get();
+        ChangedPaths filters = ChangedPaths.get();
+        for (int k = graph.lookup(headCommitSha); k >= 0;
+             k = graph.parent(k)) {
+            String sha = graph.sha(k);
+            if (filters.mayHaveChanged(sha, path)
+                    && ChangedPaths.changed(graph, k, path)) {
+                System.out.println(Utils.shaToCommit(sha));
             }
-            current = Utils.readObject(
-                    new File(Utils.gitletPath(parentSha)), Commit.class);
         }
     }
 
+    /** The first argument: "" or "--". */
+    private String args1;
+
+    /** The second argument: the path whose history is logged, or "". */
+    private String args2;
+
 }
@@ -3,6 +3,7 @@ package gitlet;
 
 import java.io.Serializable;
 import java.io.File;
+import java.util.Arrays;
 
 /** Driver class for Gitlet, the tiny stupid version-control system.
  *  @author Ryan Brill
@@ -11,8 +12,29 @@ import java.io.File;
 public class Main implements Serializable {
 
     /** Usage: java gitlet.Main ARGS, where ARGS contains
-     *  <COMMAND> <OPERAND> .... */
+     *  <COMMAND> <OPERAND> ....  If a server is running for the repository
+     *  in the working directory, the command is run there. */
     public static void main(String... args) {
+        if (args.length > 0 && Server.forwards(args[0])) {
+            int status = Server.forward(args);
+            if (status > 0) {
+                System.exit(status);
+            } else if (status == 0) {
+                return;
+            }
+        }
+        try {
+            run(args);
+        } catch (GitletException excp) {
+            System.out.println(excp.getMessage());
+        }
+    }
+
+    /** Run the command given by ARGS, printing its output.  Errors are
+     *  thrown as GitletExceptions, leaving the tracker unsaved.  The
+     *  tracker is saved last, so that no branch head is saved before the
+     *  records of the commits it names. */
+    static void run(String... args) {
 
         if (args.length == 0) {
             System.out.println("Please enter a command.");
@@ -23,7 +45,8 @@ public class Main implements Serializable {
         String args1 = (args.length > 1) ? args[1] : "";
         String args2 = (args.length > 2) ? args[2] : "";
         String args3 = (args.length > 3) ? args[3] : "";
-        Command command = getCommand(commandString, args1, args2, args3);
+        Command command = getCommand(commandString, args1, args2, args3,
+                Arrays.copyOfRange(args, 1, args.length));
 
         if (command == null) {
             System.out.println("No command with that name exists.");
@@ -46,15 +69,32 @@ public class Main implements Serializable {
         }
 
         if (!commandString.equals("init")) {
-            tracker = Utils.readObject(
-                    new File(Utils.gitletPath("tracker")), Tracker.class);
+            if (tracker == null) {
+                ObjectStore.upgradeLayout();
+                if (LegacyConverter.isLegacy()) {
+                    LegacyConverter.convert();
+                }
+                tracker = Journal.open();
+                CommitRegistry.upgrade(tracker);
+            }
         } else {
             tracker = null;
         }
 
         command.execute(tracker);
-        Utils.writeObject(new File(Utils.gitletPath("tracker")), tracker);
+        StatCache.saveIfChanged();
+        CommitGraph.saveIfChanged();
+        ChangedPaths.saveIfChanged();
+        MessageIndex.saveIfChanged();
+        CommitRegistry.saveIfChanged();
+        IdIndex.saveIfChanged();
+        Journal.save(tracker);
+
+    }
 
+    /** Forget the tracker, so that the next command reads it again. */
+    static void forgetTracker() {
+        tracker = null;
     }
 
     /** Return true iff a repository has been created. */
@@ -63,32 +103,37 @@ public class Main implements Serializable {
     }
 
 
-    /** The tracker object. */
+    /** The tracker object, kept from one command to the next by the
+     *  server. */
     private static Tracker tracker;
 
     /** Initialize the tracker object with commit INITIALCOMMIT. */
     static void initializeTracker(Commit initialCommit) {
         tracker = new Tracker("master", initialCommit);
-        tracker.addCommit(Utils.sha1(Utils.serialize(initialCommit)));
     }
 
-    /** Return the command with operands COMMANDSTRING, ARGS1, ARGS2, ARGS3. */
+    /** Return the command with operands COMMANDSTRING, ARGS1, ARGS2, ARGS3.
+     *  OPERANDS holds every operand after COMMANDSTRING, however many. */
     private static Command getCommand(
-            String commandString, String args1, String args2, String args3) {
+            String commandString, String args1, String args2, String args3,
+            String[] operands) {
         switch (commandString) {
         case "init": return new InitCommand();
-        case "add": return new AddCommand(args1);
+        case "add": return new AddCommand(operands);
         case "commit": return new CommitCommand(args1);
         case "rm": return new RmCommand(args1);
-        case "log": return new LogCommand();
+        case "log": return new LogCommand(args1, args2);
         case "global-log": return new GlobalLogCommand();
-        case "find": return new FindCommand(args1);
+        case "find": return new FindCommand(args1, args2);
         case "status": return new StatusCommand();
         case "checkout": return new CheckoutCommand(args1, args2, args3);
         case "branch": return new BranchCommand(args1);
         case "rm-branch": return new RmBranchCommand(args1);
         case "reset": return new ResetCommand(args1);
         case "merge": return new MergeCommand(args1);
+        case "repack": return new RepackCommand();
+        case "watch": return new WatchCommand();
+        case "serve": return new ServeCommand();
         default: return null;
         }
     }
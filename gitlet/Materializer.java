@@ -0,0 +1,170 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/** Writes the files of a commit into the working directory, on a pool of
+ *  PARALLELISM threads, touching only the files that differ.  The failure
+ *  reported is always that of the first failing file in name order.
+ *  @author Ryan Brill
+ */
+class Materializer {
+
+    /** Default number of threads writing files. */
+    static final int DEFAULT_PARALLELISM =
+        Runtime.getRuntime().availableProcessors();
+
+    /** Number of threads writing files. */
+    static final int PARALLELISM = Math.max(1,
+        Integer.getInteger("gitlet.checkoutThreads", DEFAULT_PARALLELISM));
+
+    /** Change the working files from those of a commit whose blobs are
+     *  FROM to those of one whose blobs are TO: delete the files of FROM
+     *  that TO lacks, and then write the files of TO whose working copies
+     *  do not already hold their blobs.  Deletions come first, deepest
+     *  paths first, so that a path that was a directory in FROM and is a
+     *  file in TO, or the reverse, is free by the time it is written.  Any
+     *  check that no file is in the way must be made before. */
+    static void update(Map<String, String> from, Map<String, String> to) {
+        ArrayList<String> deleted = new ArrayList<>();
+        for (String name : from.keySet()) {
+            if (!to.containsKey(name)) {
+                deleted.add(name);
+            }
+        }
+        deleted.sort(Comparator.comparingInt(Materializer::depth).reversed()
+                     .thenComparing(Comparator.naturalOrder()));
+        for (String name : deleted) {
+            delete(name);
+        }
+        TreeMap<String, String> changed = new TreeMap<>();
+        for (Map.Entry<String, String> file : to.entrySet()) {
+            String name = file.getKey();
+            String sha = file.getValue();
+            if (!sha.equals(from.get(name)) || !holds(name, sha)) {
+                changed.put(name, sha);
+            }
+        }
+        write(changed);
+    }
+
+    /** Write each file named in BLOBS to the working directory, holding
+     *  the contents of the blob its name maps to.  Any check that no file
+     *  is in the way must be made before. */
+    static void write(Map<String, String> blobs) {
+        TreeMap<String, String> files = new TreeMap<>(blobs);
+        RuntimeException failure;
+        if (PARALLELISM == 1 || files.size() < 2) {
+            failure = writeSerially(files);
+        } else {
+            failure = writeInParallel(files);
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        for (Map.Entry<String, String> file : files.entrySet()) {
+            StatCache.get().written(file.getKey(), file.getValue());
+        }
+    }
+
+    /** Delete the working file FILENAME, and then the directories holding
+     *  it that are left empty. */
+    private static void delete(String fileName) {
+        File file = new File(Utils.workingDirPath(fileName));
+        file.delete();
+        for (int slash = fileName.lastIndexOf(Tree.SEPARATOR); slash > 0;
+             slash = fileName.lastIndexOf(Tree.SEPARATOR, slash - 1)) {
+            file = file.getParentFile();
+            if (!file.delete()) {
+                break;
+            }
+        }
+    }
+
+    /** Return the number of directories above the file FILENAME. */
+    private static int depth(String fileName) {
+        int depth = 0;
+        for (int slash = fileName.indexOf(Tree.SEPARATOR); slash >= 0;
+             slash = fileName.indexOf(Tree.SEPARATOR, slash + 1)) {
+            depth += 1;
+        }
+        return depth;
+    }
+
+    /** Return true iff the working file FILENAME holds the contents of
+     *  the blob with SHA. */
+    private static boolean holds(String fileName, String sha) {
+        if (!new File(Utils.workingDirPath(fileName)).isFile()) {
+            return false;
+        }
+        try {
+            return sha.equals(StatCache.get().hash(fileName));
+        } catch (IllegalArgumentException excp) {
+            return false;
+        }
+    }
+
+    /** Write the FILES, returning the failure of the first to fail, or
+     *  null. */
+    private static RuntimeException writeSerially(
+            TreeMap<String, String> files) {
+        RuntimeException failure = null;
+        for (Map.Entry<String, String> file : files.entrySet()) {
+            RuntimeException excp = writeOne(file.getKey(), file.getValue());
+            if (failure == null) {
+                failure = excp;
+            }
+        }
+        return failure;
+    }
+
+    /** Write the FILES on a pool of threads, returning the failure of the
+     *  first to fail in name order, or null. */
+    private static RuntimeException writeInParallel(
+            TreeMap<String, String> files) {
+        ArrayList<Callable<RuntimeException>> tasks = new ArrayList<>();
+        for (Map.Entry<String, String> file : files.entrySet()) {
+            tasks.add(() -> writeOne(file.getKey(), file.getValue()));
+        }
+        ForkJoinPool pool =
+            new ForkJoinPool(Math.min(PARALLELISM, files.size()));
+        try {
+            List<Future<RuntimeException>> results = pool.invokeAll(tasks);
+            for (Future<RuntimeException> result : results) {
+                RuntimeException excp = result.get();
+                if (excp != null) {
+                    return excp;
+                }
+            }
+            return null;
+        } catch (InterruptedException | ExecutionException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /** Write the file FILENAME holding the contents of the blob with SHA,
+     *  returning the failure, or null. */
+    private static RuntimeException writeOne(String fileName, String sha) {
+        try {
+            File file = new File(Utils.workingDirPath(fileName));
+            if (fileName.contains(Tree.SEPARATOR)) {
+                file.getParentFile().mkdirs();
+            }
+            ObjectStore.checkout(sha, file);
+            return null;
+        } catch (RuntimeException excp) {
+            return excp;
+        }
+    }
+
+}
@@ -0,0 +1,115 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/** Finds the best common ancestors of two commits, walking the commit
+ *  graph from both at once in decreasing order of generation and stopping
+ *  once only stale commits are left, however long the history.
+ *  @author Ryan Brill
+ */
+class MergeBase {
+
+    /** Mark of commits reached from the first commit. */
+    private static final int FIRST = 1;
+
+    /** Mark of commits reached from the second commit. */
+    private static final int SECOND = 2;
+
+    /** Mark of commits that are ancestors of a best common ancestor. */
+    private static final int STALE = 4;
+
+    /** Mark of commits found to be best common ancestors. */
+    private static final int RESULT = 8;
+
+    /** Return the SHA of the best common ancestor of the commits with SHA1
+     *  and SHA2, or "" if they have none.  Where there are several, return
+     *  the one with the greatest generation, and of those the latest. */
+    static String find(String sha1, String sha2) {
+        List<String> bases = findAll(sha1, sha2);
+        return bases.isEmpty() ? "" : bases.get(0);
+    }
+
+    /** Return the SHAs of the best common ancestors of the commits with
+     *  SHA1 and SHA2, in the order in which they were found. */
+    static List<String> findAll(String sha1, String sha2) {
+        String key = sha1.compareTo(sha2) <= 0
+            ? sha1 + ":" + sha2 : sha2 + ":" + sha1;
+        List<String> bases = found.get(key);
+        if (bases == null) {
+            bases = walk(CommitGraph.get(), sha1, sha2);
+            found.put(key, bases);
+        }
+        return bases;
+    }
+
+    /** Return the SHAs of the best common ancestors of the commits with
+     *  SHA1 and SHA2 in GRAPH. */
+    private static List<String> walk(CommitGraph graph,
+                                     String sha1, String sha2) {
+        int one = graph.lookup(sha1);
+        int two = graph.lookup(sha2);
+        ArrayList<String> bases = new ArrayList<>();
+        if (one == two) {
+            bases.add(sha1);
+            return bases;
+        }
+        HashMap<Integer, Integer> marks = new HashMap<>();
+        PriorityQueue<Integer> queue = new PriorityQueue<>((a, b) -> {
+            int cmp = Integer.compare(graph.generation(b),
+                    graph.generation(a));
+            if (cmp == 0) {
+                cmp = graph.timeStamp(b).compareTo(graph.timeStamp(a));
+            }
+            return cmp;
+        });
+        marks.put(one, FIRST);
+        marks.put(two, SECOND);
+        queue.add(one);
+        queue.add(two);
+        int active = 2;
+        while (active > 0) {
+            int k = queue.remove();
+            int mark = marks.get(k);
+            if ((mark & STALE) == 0) {
+                active -= 1;
+            }
+            int passed = mark & (FIRST | SECOND | STALE);
+            if (passed == (FIRST | SECOND)) {
+                if ((mark & RESULT) == 0) {
+                    marks.put(k, mark | RESULT);
+                    bases.add(graph.sha(k));
+                }
+                passed |= STALE;
+            }
+            for (int parent : new int[] {
+                    graph.parent(k), graph.secondParent(k) }) {
+                if (parent < 0) {
+                    continue;
+                }
+                Integer old = marks.get(parent);
+                if (old == null) {
+                    marks.put(parent, passed);
+                    queue.add(parent);
+                    if ((passed & STALE) == 0) {
+                        active += 1;
+                    }
+                } else if ((old & passed) != passed) {
+                    marks.put(parent, old | passed);
+                    if ((old & STALE) == 0 && (passed & STALE) != 0) {
+                        active -= 1;
+                    }
+                }
+            }
+        }
+        return bases;
+    }
+
+    /** The best common ancestors found, by the SHAs of the two commits,
+     *  the lesser first. */
+    private static final HashMap<String, List<String>> found =
+        new HashMap<>();
+
+}
@@ -3,8 +3,8 @@ package gitlet;
 import java.io.File;
 import java.io.Serializable;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Map;
 
 /** Merges files from the given branch into the current branch.
  *  @author Ryan Brill
@@ -30,20 +30,18 @@ class MergeCommand implements Command, Serializable {
         String currentBranchName = tracker.getCurrentBranchName();
         String currentBranchSha = tracker.getCurrentBranchReference();
         Commit currentBranch = Utils.shaToCommit(currentBranchSha);
-        String splitPointSha = findSplitPoint(givenBranchSha, currentBranchSha);
+        String splitPointSha =
+                MergeBase.find(givenBranchSha, currentBranchSha);
         Commit splitPoint = Utils.shaToCommit(splitPointSha);
         if (splitPointSha.equals(givenBranchSha)) {
-            System.out.println(
-                    "Given branch is an ancestor of the current branch."
-            );
-            System.exit(0);
+            throw Utils.error(
+                    "Given branch is an ancestor of the current branch.");
         }
         if (splitPointSha.equals(currentBranchSha)) {
             tracker.setCurrentBranchReference(
                     tracker.getBranchReference(branchName)
             );
-            System.out.println("Current branch fast-forwarded.");
-            System.exit(0);
+            throw Utils.error("Current branch fast-forwarded.");
         }
         HashSet<String> presentAtSplitPoint =
                 new HashSet<>(splitPoint.blobMap().keySet());
@@ -160,12 +158,13 @@ class MergeCommand implements Command, Serializable {
                     new File(Utils.workingDirPath(fileName)),
                     contents
             );
-            (new AddCommand(fileName)).execute(tracker);
+            (new AddCommand(new String[] {fileName})).execute(tracker);
         }
 
         String logMessage = "Merged " + branchName
                             + " into " + currentBranchName + ".";
-        (new CommitCommand(logMessage)).execute(tracker);
+        (new CommitCommand(logMessage, tracker.getBranchReference(branchName)))
+            .execute(tracker);
 
         if (!inConflict.isEmpty()) {
             System.out.println("Encountered a merge conflict.");
@@ -205,54 +204,36 @@ class MergeCommand implements Command, Serializable {
 
     /** Return a set of fileNames that have (if MODIFIED is true),
      *  or have not (if MODIFIED is false),
-     *  been modified in the commit BRANCHHEAD since the commit SPLITPOINT. */
+     *  been modified in the commit BRANCHHEAD since the commit SPLITPOINT.
+     *  The modified ones are found by comparing the commits' trees. */
     private HashSet<String> modifiedSinceSplitPoint(
             Commit branchHead, Commit splitPoint, boolean modified) {
+        if (modified) {
+            HashSet<String> modifiedFileNames = new HashSet<>();
+            for (Map.Entry<String, String> change
+                     : Tree.diff(splitPoint, branchHead).entrySet()) {
+                if (change.getValue() != null
+                        && splitPoint.isTracking(change.getKey())) {
+                    modifiedFileNames.add(change.getKey());
+                }
+            }
+            return modifiedFileNames;
+        }
         HashSet<String> fileNamesInBranchHead =
                 new HashSet<>(branchHead.blobMap().keySet());
         HashSet<String> fileNamesInSplitPoint =
                 new HashSet<>(splitPoint.blobMap().keySet());
         fileNamesInBranchHead.retainAll(fileNamesInSplitPoint);
 
-        HashSet<String> modifiedFileNames = new HashSet<>();
+        HashSet<String> unmodifiedFileNames = new HashSet<>();
         for (String fileName : fileNamesInBranchHead) {
             String shaInSplitPoint = splitPoint.getBlobReference(fileName);
             String shaInBranchHead = branchHead.getBlobReference(fileName);
-            if (modified && !shaInSplitPoint.equals(shaInBranchHead)) {
-                modifiedFileNames.add(fileName);
-            } else if (!modified && shaInSplitPoint.equals(shaInBranchHead)) {
-                modifiedFileNames.add(fileName);
-            }
-        }
-        return modifiedFileNames;
-    }
-
-
-    /** Return the split point of the commits associated with
-     *  COMMIT1SHA and COMMIT2SHA, using TRACKER. */
-    private String findSplitPoint(String commit1Sha, String commit2Sha) {
-        ArrayList<String> commit1History =
-                new ArrayList<>(getCommitHistory(commit1Sha));
-        ArrayList<String> commit2History =
-                new ArrayList<>(getCommitHistory(commit2Sha));
-        commit1History.retainAll(commit2History);
-        return (commit1History.isEmpty()) ? "" : commit1History.get(0);
-    }
-
-    /** Return the commit history of the commit associated with COMMITSHA,
-     * all the way back to the initial commit. */
-    private ArrayList<String> getCommitHistory(String commitSha) {
-        ArrayList<String> history = new ArrayList<>();
-        Commit commit = Utils.shaToCommit(commitSha);
-        while (!commitSha.equals("")) {
-            history.add(commitSha);
-            commitSha = commit.getParentReference();
-            if (commitSha.equals("")) {
-                break;
+            if (shaInSplitPoint.equals(shaInBranchHead)) {
+                unmodifiedFileNames.add(fileName);
             }
-            commit = Utils.shaToCommit(commitSha);
         }
-        return history;
+        return unmodifiedFileNames;
     }
 
 
@@ -260,18 +241,15 @@ class MergeCommand implements Command, Serializable {
     private void performErrorChecks(Tracker tracker) {
         if (!tracker.getStagingArea().isEmpty()
                 || !tracker.getRemoveThese().isEmpty()) {
-            System.out.println("You have uncommitted changes.");
-            System.exit(0);
+            throw Utils.error("You have uncommitted changes.");
         }
 
         if (!tracker.branchNameExists(branchName)) {
-            System.out.println("A branch with that name does not exist.");
-            System.exit(0);
+            throw Utils.error("A branch with that name does not exist.");
         }
 
         if (tracker.getCurrentBranchName().equals(branchName)) {
-            System.out.println("Cannot merge a branch with itself.");
-            System.exit(0);
+            throw Utils.error("Cannot merge a branch with itself.");
         }
 
         tracker.checkUntrackedFileInTheWay();
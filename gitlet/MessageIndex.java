@@ -0,0 +1,715 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/** An index of commit messages, so that find reads no commits.  The
+ *  messages are appended to .gitlet/messages, and the positions of those
+ *  holding each word and trigram are chained in hashed buckets in
+ *  .gitlet/message-postings, whose bucket table grows with the index.
+ *  @author Ryan Brill
+ */
+class MessageIndex {
+
+    /** Name of the index file within .gitlet. */
+    static final String INDEX_FILE = "messages";
+
+    /** Name of the postings file within .gitlet. */
+    static final String POSTINGS_FILE = "message-postings";
+
+    /** Length of the n-grams indexed. */
+    static final int GRAM = 3;
+
+    /** Fewest and most bits of a term's hash that choose its bucket. */
+    static final int MIN_BUCKET_BITS = 8, MAX_BUCKET_BITS = 20;
+
+    /** Fewest buckets kept for each message indexed: with fewer, the
+     *  postings are written afresh with BUCKET_GROWTH times as many. */
+    static final int BUCKETS_PER_MESSAGE = 16;
+
+    /** Factor by which the buckets needed are exceeded when the postings
+     *  are written afresh. */
+    static final int BUCKET_GROWTH = 4;
+
+    /** First four bytes of the index file: "GMSG". */
+    private static final int MAGIC = 0x474d5347;
+
+    /** The format version written. */
+    private static final int VERSION = 1;
+
+    /** Length of the file's header: its magic and version. */
+    private static final int HEADER_SIZE = 8;
+
+    /** Length of a message's header: the commit's SHA and the message's
+     *  length. */
+    private static final int RECORD_HEADER_SIZE =
+        Codec.SHA_SIZE + Integer.BYTES;
+
+    /** First four bytes of the postings file: "GMPS". */
+    private static final int POSTINGS_MAGIC = 0x474d5053;
+
+    /** The postings format version written. */
+    private static final int POSTINGS_VERSION = 1;
+
+    /** Length of the postings file's header: its magic and version, the
+     *  length of the messages file posted, the number of messages in it
+     *  and the number of bits that choose a bucket. */
+    private static final int POSTINGS_HEADER_SIZE = 24;
+
+    /** Length of a node: a message's position and that of the node
+     *  before. */
+    private static final int NODE_SIZE = 2 * Long.BYTES;
+
+    /** Kinds of term, hashed with the term. */
+    private static final char WORD = 'w', TRIGRAM = 't';
+
+    /** Characters with a meaning of their own in a regular expression. */
+    private static final String REGEX_META = "\\.[]{}()*+?^$|";
+
+    /** Return the index of the current repository. */
+    static MessageIndex get() {
+        if (index == null) {
+            index = new MessageIndex();
+            index.open();
+        }
+        return index;
+    }
+
+    /** Forget the index, so that the next command opens it again. */
+    static void reset() {
+        index = null;
+    }
+
+    /** Append the messages added to the index of the current repository,
+     *  if it was opened, to its files. */
+    static void saveIfChanged() {
+        if (index != null && !index.pendingShas.isEmpty()) {
+            index.sync();
+        }
+    }
+
+    /** Add the commit with SHA, whose message is MESSAGE. */
+    void add(String sha, String message) {
+        pendingShas.add(sha);
+        pendingMessages.add(message);
+    }
+
+    /** Return the number of commits indexed. */
+    int size() {
+        sync();
+        return count;
+    }
+
+    /** Write the index afresh to hold the commits of REGISTRY, in the
+     *  order they were made, reading only those whose messages it
+     *  lacks. */
+    void rebuild(CommitRegistry registry) {
+        sync();
+        HashMap<String, String> known = new HashMap<>();
+        ByteBuffer all = readMessages(HEADER_SIZE, covered);
+        while (all.hasRemaining()) {
+            String sha = Utils.toHex(all.array(), all.position(),
+                    Codec.SHA_SIZE);
+            known.put(sha, nextMessage(all));
+        }
+        LinkedHashMap<String, String> messages = new LinkedHashMap<>();
+        registry.forEach(sha -> messages.put(sha, known.containsKey(sha)
+                ? known.get(sha) : Utils.shaToCommit(sha).getLogMessage()));
+        messagesLength = 0;
+        pendingShas.addAll(messages.keySet());
+        pendingMessages.addAll(messages.values());
+        sync();
+    }
+
+    /** Return the SHAs of the commits whose message is MESSAGE. */
+    List<String> exact(String message) {
+        HashSet<String> words = tokens(message);
+        if (words.isEmpty()) {
+            return search(TRIGRAM, grams(message), m -> m.equals(message));
+        }
+        return search(WORD, words, m -> m.equals(message));
+    }
+
+    /** Return the SHAs of the commits whose messages hold every word of
+     *  WORDS as a word. */
+    List<String> words(String words) {
+        HashSet<String> wanted = tokens(words);
+        if (wanted.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return search(WORD, wanted, m -> tokens(m).containsAll(wanted));
+    }
+
+    /** Return the SHAs of the commits whose messages contain TEXT. */
+    List<String> substring(String text) {
+        return search(TRIGRAM, grams(text), m -> m.contains(text));
+    }
+
+    /** Return the SHAs of the commits part of whose message matches the
+     *  regular expression REGEX. */
+    List<String> regex(String regex) {
+        Pattern pattern;
+        try {
+            pattern = Pattern.compile(regex);
+        } catch (PatternSyntaxException excp) {
+            throw Utils.error("Invalid regular expression.");
+        }
+        HashSet<String> grams = new HashSet<>();
+        for (String literal : requiredLiterals(regex)) {
+            grams.addAll(grams(literal));
+        }
+        return search(TRIGRAM, grams, m -> pattern.matcher(m).find());
+    }
+
+    /** Return the SHAs of the commits whose messages are in the postings
+     *  of every term of TERMS, of kind KIND, or of all commits if TERMS is
+     *  empty, and pass TEST, in the order they were added. */
+    private List<String> search(char kind, Set<String> terms,
+                                Predicate<String> test) {
+        sync();
+        ArrayList<String> result = new ArrayList<>();
+        if (terms.isEmpty()) {
+            ByteBuffer all = readMessages(HEADER_SIZE, covered);
+            while (all.hasRemaining()) {
+                String sha = Utils.toHex(all.array(), all.position(),
+                        Codec.SHA_SIZE);
+                if (test.test(nextMessage(all))) {
+                    result.add(sha);
+                }
+            }
+            return result;
+        }
+        try (FileChannel postings = FileChannel.open(
+                 postingsFile().toPath(), StandardOpenOption.READ);
+             FileChannel messages = FileChannel.open(
+                 indexFile().toPath(), StandardOpenOption.READ)) {
+            long[] candidates = null;
+            for (int bucket : buckets(kind, terms)) {
+                long[] list = postings(postings, bucket);
+                candidates = candidates == null ? list
+                    : intersect(candidates, list);
+                if (candidates.length == 0) {
+                    break;
+                }
+            }
+            ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+            for (long position : candidates) {
+                header.clear();
+                readFully(messages, header, position);
+                ByteBuffer text = ByteBuffer.allocate(
+                        header.getInt(Codec.SHA_SIZE));
+                readFully(messages, text, position + RECORD_HEADER_SIZE);
+                String message = new String(text.array(),
+                        StandardCharsets.UTF_8);
+                if (test.test(message)) {
+                    result.add(Utils.toHex(header.array(), 0,
+                            Codec.SHA_SIZE));
+                }
+            }
+            return result;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return the positions of the messages in the postings of BUCKET,
+     *  read from the postings file open on CHANNEL, in ascending
+     *  order. */
+    private long[] postings(FileChannel channel, int bucket)
+        throws IOException {
+        ArrayList<Long> positions = new ArrayList<>();
+        ByteBuffer node = ByteBuffer.allocate(NODE_SIZE);
+        long next = readLong(channel, head(bucket));
+        while (next >= nodes()) {
+            node.clear();
+            readFully(channel, node, next);
+            positions.add(node.getLong(0));
+            long before = node.getLong(Long.BYTES);
+            next = before < next ? before : 0;
+        }
+        return positions.stream().mapToLong(Long::longValue).sorted()
+            .distinct().toArray();
+    }
+
+    /** Return the numbers in both of the ascending arrays A and B. */
+    private static long[] intersect(long[] a, long[] b) {
+        long[] both = new long[Math.min(a.length, b.length)];
+        int n = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            int cmp = Long.compare(a[i], b[j]);
+            if (cmp == 0) {
+                both[n] = a[i];
+                n += 1;
+            }
+            if (cmp <= 0) {
+                i += 1;
+            }
+            if (cmp >= 0) {
+                j += 1;
+            }
+        }
+        return Arrays.copyOf(both, n);
+    }
+
+    /** Return the buckets of the TERMS of kind KIND. */
+    private HashSet<Integer> buckets(char kind, Set<String> terms) {
+        HashSet<Integer> buckets = new HashSet<>();
+        for (String term : terms) {
+            int hash = (kind + term).hashCode() * 0x9e3779b9;
+            buckets.add(hash >>> (Integer.SIZE - bucketBits));
+        }
+        return buckets;
+    }
+
+    /** Return the buckets of the words and trigrams of MESSAGE. */
+    private HashSet<Integer> buckets(String message) {
+        HashSet<Integer> buckets = buckets(WORD, tokens(message));
+        buckets.addAll(buckets(TRIGRAM, grams(message)));
+        return buckets;
+    }
+
+    /** Return the words of TEXT. */
+    static HashSet<String> tokens(String text) {
+        HashSet<String> tokens = new HashSet<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i += 1) {
+            boolean inWord = i < text.length()
+                && Character.isLetterOrDigit(text.charAt(i));
+            if (inWord && start < 0) {
+                start = i;
+            } else if (!inWord && start >= 0) {
+                tokens.add(text.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    /** Return the trigrams of TEXT. */
+    static HashSet<String> grams(String text) {
+        HashSet<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= text.length(); i += 1) {
+            grams.add(text.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+
+    /** Return strings that every match of the regular expression REGEX
+     *  contains: its runs of literal characters outside groups, classes
+     *  and alternations.  An escape ends a run unless it stands for a
+     *  character with a meaning of its own, and the arguments of an escape,
+     *  such as the digits of \x41, are never literals.  Where REGEX has an
+     *  alternation or flags, return none, since then no string need
+     *  occur. */
+    static List<String> requiredLiterals(String regex) {
+        ArrayList<String> literals = new ArrayList<>();
+        if (regex.contains("|") || regex.contains("(?")
+                || regex.contains("\\Q")) {
+            return literals;
+        }
+        StringBuilder run = new StringBuilder();
+        int depth = 0;
+        boolean inClass = false;
+        for (int i = 0; i < regex.length(); i += 1) {
+            char c = regex.charAt(i);
+            char next = i + 1 < regex.length() ? regex.charAt(i + 1) : 0;
+            boolean literal = false;
+            if (c == '\\') {
+                i += 1;
+                literal = !inClass && depth == 0
+                    && REGEX_META.indexOf(next) >= 0;
+                c = next;
+                if (i < regex.length()) {
+                    i = escapeEnd(regex, i);
+                }
+                next = i + 1 < regex.length() ? regex.charAt(i + 1) : 0;
+            } else if (inClass) {
+                inClass = c != ']';
+            } else if (c == '[') {
+                inClass = true;
+            } else if (c == '{') {
+                i = Math.max(i, regex.indexOf('}', i));
+                next = i + 1 < regex.length() ? regex.charAt(i + 1) : 0;
+            } else if (c == '(') {
+                depth += 1;
+            } else if (c == ')') {
+                depth -= 1;
+            } else {
+                literal = depth == 0 && REGEX_META.indexOf(c) < 0;
+            }
+            boolean optional = next == '*' || next == '?' || next == '{';
+            if (literal && !optional) {
+                run.append(c);
+            }
+            if (!literal || optional || next == '+') {
+                literals.add(run.toString());
+                run.setLength(0);
+            }
+        }
+        literals.add(run.toString());
+        literals.removeIf(s -> s.length() < GRAM);
+        return literals;
+    }
+
+    /** Return the index of the last character of the escape in REGEX
+     *  whose letter is at I: that of the last of the arguments it takes,
+     *  as in \x41, \x{41}, \0101, \cA, \p{Lu} or \k<name>, or I if it
+     *  takes none. */
+    private static int escapeEnd(String regex, int i) {
+        char letter = regex.charAt(i);
+        boolean braced = i + 1 < regex.length() && regex.charAt(i + 1) == '{';
+        int end;
+        switch (letter) {
+        case 'x':
+            end = braced ? regex.indexOf('}', i) : i + 2;
+            break;
+        case 'u':
+            end = i + 4;
+            break;
+        case 'c':
+            end = i + 1;
+            break;
+        case 'p': case 'P': case 'N':
+            end = braced ? regex.indexOf('}', i) : i + 1;
+            break;
+        case 'k':
+            end = regex.indexOf('>', i);
+            break;
+        case '0':
+            end = i;
+            while (end - i < 3 && end + 1 < regex.length()
+                   && regex.charAt(end + 1) >= '0'
+                   && regex.charAt(end + 1) <= '7') {
+                end += 1;
+            }
+            if (end - i == 3 && regex.charAt(i + 1) > '3') {
+                end -= 1;
+            }
+            break;
+        default:
+            end = i;
+        }
+        return end < 0 ? regex.length() - 1
+            : Math.min(end, regex.length() - 1);
+    }
+
+    /** Find the lengths of the messages file and of the part of it
+     *  posted.  Either is 0 if its file is missing or unusable, so that it
+     *  is written afresh. */
+    private void open() {
+        File file = indexFile();
+        if (!file.exists()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new FileInputStream(file))) {
+            if (file.length() < HEADER_SIZE || in.readInt() != MAGIC
+                    || in.readInt() != VERSION) {
+                return;
+            }
+        } catch (IOException excp) {
+            return;
+        }
+        messagesLength = file.length();
+        File postings = postingsFile();
+        if (!postings.exists()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new FileInputStream(postings))) {
+            if (postings.length() < POSTINGS_HEADER_SIZE
+                    || in.readInt() != POSTINGS_MAGIC
+                    || in.readInt() != POSTINGS_VERSION) {
+                return;
+            }
+            long posted = in.readLong();
+            int n = in.readInt();
+            int bits = in.readInt();
+            if (posted >= HEADER_SIZE && posted <= messagesLength
+                    && bits >= MIN_BUCKET_BITS && bits <= MAX_BUCKET_BITS) {
+                covered = posted;
+                count = n;
+                bucketBits = bits;
+            }
+        } catch (IOException excp) {
+            return;
+        }
+    }
+
+    /** Bring the files up to date: write them afresh if they must be,
+     *  post the messages not yet posted, and append and post the messages
+     *  added.  Once the postings have too few buckets for the messages,
+     *  write them afresh with more. */
+    private void sync() {
+        try {
+            if (messagesLength == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putInt(VERSION);
+                Utils.writeContentsAtomically(indexFile(), header.array());
+                messagesLength = HEADER_SIZE;
+                covered = 0;
+            }
+            if (covered == 0) {
+                startPostings(MIN_BUCKET_BITS);
+            }
+            if (covered < messagesLength) {
+                postUnposted();
+            }
+            if (!pendingShas.isEmpty()) {
+                appendPending();
+            }
+            if (bucketBits < MAX_BUCKET_BITS
+                    && (long) count * BUCKETS_PER_MESSAGE > 1L << bucketBits) {
+                startPostings(bucketBits(count));
+                postUnposted();
+            }
+        } catch (IOException | IllegalArgumentException excp) {
+            throw Utils.error("Could not save message index: %s",
+                    excp.getMessage());
+        }
+    }
+
+    /** Write an empty postings file with buckets chosen by BITS bits. */
+    private void startPostings(int bits) throws IOException {
+        bucketBits = bits;
+        Utils.writeContentsAtomically(postingsFile(),
+                postingsHeader(HEADER_SIZE, 0).array());
+        covered = HEADER_SIZE;
+        count = 0;
+    }
+
+    /** Return the number of bits that choose a bucket in postings written
+     *  afresh for N messages. */
+    private static int bucketBits(int n) {
+        int bits = MIN_BUCKET_BITS;
+        while (bits < MAX_BUCKET_BITS && 1L << bits
+               < (long) n * BUCKETS_PER_MESSAGE * BUCKET_GROWTH) {
+            bits += 1;
+        }
+        return bits;
+    }
+
+    /** Post the whole messages beyond those posted, and cut the messages
+     *  file short after the last of them. */
+    private void postUnposted() throws IOException {
+        ByteBuffer unposted = readMessages(covered, messagesLength);
+        ArrayList<Long> positions = new ArrayList<>();
+        ArrayList<String> messages = new ArrayList<>();
+        while (unposted.remaining() >= RECORD_HEADER_SIZE) {
+            int length = unposted.getInt(unposted.position()
+                    + Codec.SHA_SIZE);
+            if (length < 0
+                    || length > unposted.remaining() - RECORD_HEADER_SIZE) {
+                break;
+            }
+            positions.add(covered + unposted.position());
+            messages.add(nextMessage(unposted));
+        }
+        long end = covered + unposted.position();
+        if (end < messagesLength) {
+            try (FileChannel out = FileChannel.open(indexFile().toPath(),
+                    StandardOpenOption.WRITE)) {
+                out.truncate(end);
+            }
+            messagesLength = end;
+        }
+        post(positions, messages, end);
+    }
+
+    /** Append the messages added to the messages file, and post them. */
+    private void appendPending() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        ArrayList<Long> positions = new ArrayList<>();
+        for (int i = 0; i < pendingShas.size(); i += 1) {
+            positions.add(messagesLength + bytes.size());
+            byte[] utf8 = pendingMessages.get(i)
+                .getBytes(StandardCharsets.UTF_8);
+            out.write(Pack.toRaw(pendingShas.get(i)));
+            out.writeInt(utf8.length);
+            out.write(utf8);
+        }
+        ByteBuffer records = ByteBuffer.wrap(bytes.toByteArray());
+        try (FileChannel channel = FileChannel.open(indexFile().toPath(),
+                StandardOpenOption.WRITE)) {
+            channel.truncate(messagesLength);
+            while (records.hasRemaining()) {
+                channel.write(records, messagesLength + records.position());
+            }
+        }
+        messagesLength += records.limit();
+        post(positions, new ArrayList<>(pendingMessages), messagesLength);
+        pendingShas.clear();
+        pendingMessages.clear();
+    }
+
+    /** Add the messages MESSAGES, at POSITIONS in the messages file, to
+     *  the postings of their words and trigrams, and record that the
+     *  messages file is posted up to END. */
+    private void post(List<Long> positions, List<String> messages, long end)
+        throws IOException {
+        TreeMap<Integer, ArrayList<Long>> byBucket = new TreeMap<>();
+        int nodes = 0;
+        for (int i = 0; i < positions.size(); i += 1) {
+            for (int bucket : buckets(messages.get(i))) {
+                byBucket.computeIfAbsent(bucket, b -> new ArrayList<>())
+                    .add(positions.get(i));
+                nodes += 1;
+            }
+        }
+        try (FileChannel channel = FileChannel.open(postingsFile().toPath(),
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long start = Math.max(channel.size(), nodes());
+            ByteBuffer added = ByteBuffer.allocate(nodes * NODE_SIZE);
+            HashMap<Integer, Long> heads = new HashMap<>();
+            for (Map.Entry<Integer, ArrayList<Long>> bucket
+                     : byBucket.entrySet()) {
+                long head = readLong(channel, head(bucket.getKey()));
+                for (long position : bucket.getValue()) {
+                    long node = start + added.position();
+                    added.putLong(position).putLong(head);
+                    head = node;
+                }
+                heads.put(bucket.getKey(), head);
+            }
+            added.flip();
+            while (added.hasRemaining()) {
+                channel.write(added, start + added.position());
+            }
+            ByteBuffer head = ByteBuffer.allocate(Long.BYTES);
+            for (Map.Entry<Integer, Long> bucket : heads.entrySet()) {
+                head.clear();
+                head.putLong(bucket.getValue()).flip();
+                channel.write(head, head(bucket.getKey()));
+            }
+            ByteBuffer header = postingsHeader(end, count + positions.size());
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+        }
+        covered = end;
+        count += positions.size();
+    }
+
+    /** Return a header for this index's postings file in which the
+     *  messages file is posted up to COVERED, holding N messages. */
+    private ByteBuffer postingsHeader(long covered, int n) {
+        ByteBuffer header = ByteBuffer.allocate(POSTINGS_HEADER_SIZE);
+        header.putInt(POSTINGS_MAGIC).putInt(POSTINGS_VERSION);
+        header.putLong(covered).putInt(n).putInt(bucketBits);
+        return header.flip();
+    }
+
+    /** Return the position of the first node in the postings file. */
+    private long nodes() {
+        return POSTINGS_HEADER_SIZE + (Long.BYTES << bucketBits);
+    }
+
+    /** Return the position in the postings file of the head of
+     *  BUCKET. */
+    private static long head(int bucket) {
+        return POSTINGS_HEADER_SIZE + (long) bucket * Long.BYTES;
+    }
+
+    /** Return the bytes of the messages file from START to END. */
+    private static ByteBuffer readMessages(long start, long end) {
+        ByteBuffer bytes = ByteBuffer.allocate((int) (end - start));
+        try (FileChannel in = FileChannel.open(indexFile().toPath(),
+                StandardOpenOption.READ)) {
+            readFully(in, bytes, start);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return bytes.flip();
+    }
+
+    /** Return the message of the whole record at the position of IN,
+     *  moving past it. */
+    private static String nextMessage(ByteBuffer in) {
+        in.position(in.position() + Codec.SHA_SIZE);
+        int length = in.getInt();
+        String message = new String(in.array(), in.position(), length,
+                StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return message;
+    }
+
+    /** Return the long at POSITION in the file open on CHANNEL, or 0 if
+     *  the file ends before it. */
+    private static long readLong(FileChannel channel, long position)
+        throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(Long.BYTES);
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, position + buf.position()) < 0) {
+                return 0;
+            }
+        }
+        return buf.getLong(0);
+    }
+
+    /** Fill BUF from the file open on CHANNEL, from POSITION on. */
+    private static void readFully(FileChannel channel, ByteBuffer buf,
+                                  long position) throws IOException {
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, position + buf.position()) < 0) {
+                throw new IOException("message index shrank while read");
+            }
+        }
+    }
+
+    /** Return the index file. */
+    private static File indexFile() {
+        return new File(Utils.gitletPath(INDEX_FILE));
+    }
+
+    /** Return the postings file. */
+    private static File postingsFile() {
+        return new File(Utils.gitletPath(POSTINGS_FILE));
+    }
+
+    /** The index of the current repository, once opened. */
+    private static MessageIndex index;
+
+    /** Length of the messages file, or 0 if it must be written afresh. */
+    private long messagesLength;
+
+    /** Length of the part of the messages file posted, or 0 if the
+     *  postings must be written afresh. */
+    private long covered;
+
+    /** Number of messages posted. */
+    private int count;
+
+    /** Number of bits of a term's hash that choose its bucket. */
+    private int bucketBits = MIN_BUCKET_BITS;
+
+    /** SHAs of the commits added and not yet written. */
+    private final ArrayList<String> pendingShas = new ArrayList<>();
+
+    /** Messages of the commits added and not yet written, in the same
+     *  order. */
+    private final ArrayList<String> pendingMessages = new ArrayList<>();
+
+}
@@ -0,0 +1,148 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** A cache of the commits, trees and blobs read from the object store,
+ *  each kind bounded and evicted least recently used first.  Everything
+ *  returned is shared, and must not be changed.
+ *  @author Ryan Brill
+ */
+class ObjectCache {
+
+    /** Default number of commits, and of trees, held. */
+    static final int DEFAULT_CACHE_ENTRIES = 4096;
+
+    /** Number of commits, and of trees, held. */
+    static final int CACHE_ENTRIES = Math.max(1,
+        Integer.getInteger("gitlet.objectCacheEntries",
+                           DEFAULT_CACHE_ENTRIES));
+
+    /** Number of flattened root trees held. */
+    static final int FILE_LISTINGS = 8;
+
+    /** Default number of bytes of blob contents held. */
+    static final long DEFAULT_BLOB_CACHE_BYTES = 32L << 20;
+
+    /** Number of bytes of blob contents held. */
+    static final long BLOB_CACHE_BYTES =
+        Long.getLong("gitlet.blobCacheBytes", DEFAULT_BLOB_CACHE_BYTES);
+
+    /** Return the number of lookups answered from the cache. */
+    static synchronized long hits() {
+        return hits;
+    }
+
+    /** Return the number of lookups that had to read the object store. */
+    static synchronized long misses() {
+        return misses;
+    }
+
+    /** Return the commit with SHA. */
+    static Commit commit(String sha) {
+        Commit commit = get(COMMITS, sha);
+        if (commit == null) {
+            commit = Codec.decodeCommit(ObjectStore.readContents(sha));
+            put(COMMITS, sha, commit);
+        }
+        return commit;
+    }
+
+    /** Return the tree with SHA. */
+    static Tree tree(String sha) {
+        Tree tree = get(TREES, sha);
+        if (tree == null) {
+            tree = Tree.decode(ObjectStore.readContents(sha));
+            put(TREES, sha, tree);
+        }
+        return tree;
+    }
+
+    /** Return the files of the commit whose root tree has SHA, blob SHAs
+     *  by path. */
+    static HashMap<String, String> files(String sha) {
+        HashMap<String, String> files = get(LISTINGS, sha);
+        if (files == null) {
+            files = Tree.flatten(sha);
+            put(LISTINGS, sha, files);
+        }
+        return files;
+    }
+
+    /** Return the contents of the blob with SHA. */
+    static byte[] blob(String sha) {
+        byte[] contents = BLOBS.get(sha);
+        count(contents != null);
+        if (contents != null) {
+            return contents;
+        }
+        try (InputStream in = ObjectStore.openBlob(sha)) {
+            contents = in.readAllBytes();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        BLOBS.put(sha, contents);
+        return contents;
+    }
+
+    /** Return the value CACHE holds for SHA, or null. */
+    private static <T> T get(Map<String, T> cache, String sha) {
+        T value;
+        synchronized (cache) {
+            value = cache.get(sha);
+        }
+        count(value != null);
+        return value;
+    }
+
+    /** Count a lookup, answered from the cache iff HIT. */
+    private static synchronized void count(boolean hit) {
+        if (hit) {
+            hits += 1;
+        } else {
+            misses += 1;
+        }
+    }
+
+    /** Hold VALUE in CACHE for SHA. */
+    private static <T> void put(Map<String, T> cache, String sha, T value) {
+        synchronized (cache) {
+            cache.put(sha, value);
+        }
+    }
+
+    /** Return an empty map that holds at most CAPACITY entries, evicting
+     *  the least recently used. */
+    private static <T> Map<String, T> lru(int capacity) {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, T> e) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /** The commits read most recently, by SHA. */
+    private static final Map<String, Commit> COMMITS = lru(CACHE_ENTRIES);
+
+    /** The trees read most recently, by SHA. */
+    private static final Map<String, Tree> TREES = lru(CACHE_ENTRIES);
+
+    /** The files of the root trees flattened most recently, by SHA. */
+    private static final Map<String, HashMap<String, String>> LISTINGS =
+        lru(FILE_LISTINGS);
+
+    /** The contents of the blobs read most recently, by SHA. */
+    private static final Pack.BaseCache BLOBS =
+        new Pack.BaseCache(BLOB_CACHE_BYTES);
+
+    /** Number of lookups answered from the cache. */
+    private static long hits;
+
+    /** Number of lookups that had to read the object store. */
+    private static long misses;
+
+}
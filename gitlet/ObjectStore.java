@@ -0,0 +1,604 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/** The object store: where commits, trees and blobs live inside .gitlet,
+ *  deflated, in .gitlet/objects/ab/cdef... for the SHA abcdef..., unless
+ *  repack has bundled them into packs.  An object's SHA is that of its
+ *  uncompressed contents, but for a tree stored as a delta (see Tree).
+ *  @author Ryan Brill
+ */
+class ObjectStore {
+
+    /** Name of the objects directory within .gitlet. */
+    static final String OBJECTS_DIR = "objects";
+
+    /** Number of leading hex digits used to name a fan-out directory. */
+    static final int FANOUT_LENGTH = 2;
+
+    /** Name of the directory within the objects directory that holds
+     *  packs. */
+    static final String PACK_DIR = "pack";
+
+    /** Size of the buffers used when streaming objects in and out. */
+    static final int BUFFER_SIZE = 8192;
+
+    /** Size of the buffer through which files are read into blobs. */
+    static final int INGEST_BUFFER_SIZE = 64 * 1024;
+
+    /** First byte of every zlib stream written with a 32K window. */
+    private static final int ZLIB_HEADER = 0x78;
+
+    /** Return the objects directory. */
+    static File objectsDir() {
+        return new File(Utils.gitletPath(OBJECTS_DIR));
+    }
+
+    /** Return the fan-out directory that holds objects whose SHA
+     *  starts with PREFIX (at least FANOUT_LENGTH digits long). */
+    static File fanoutDir(String prefix) {
+        return new File(objectsDir(), prefix.substring(0, FANOUT_LENGTH));
+    }
+
+    /** Return the file holding the object with SHA. */
+    static File objectFile(String sha) {
+        if (sha.length() <= FANOUT_LENGTH) {
+            throw new IllegalArgumentException("object id too short");
+        }
+        return new File(fanoutDir(sha), sha.substring(FANOUT_LENGTH));
+    }
+
+    /** Return true iff an object with SHA is stored. */
+    static boolean contains(String sha) {
+        return findPack(sha) != null || isLoose(sha);
+    }
+
+    /** Return true iff the object with SHA is stored as a loose object. */
+    static boolean isLoose(String sha) {
+        return sha.length() > FANOUT_LENGTH && objectFile(sha).isFile();
+    }
+
+    /** Return the SHAs of all loose objects. */
+    static List<String> looseObjects() {
+        ArrayList<String> result = new ArrayList<>();
+        String[] fanouts = objectsDir().list();
+        if (fanouts == null) {
+            return result;
+        }
+        for (String fanout : fanouts) {
+            if (fanout.length() != FANOUT_LENGTH) {
+                continue;
+            }
+            String[] names = new File(objectsDir(), fanout).list();
+            for (String name : names) {
+                if (isObjectName(fanout + name)) {
+                    result.add(fanout + name);
+                }
+            }
+        }
+        return result;
+    }
+
+    /* PACKS. */
+
+    /** The packs in the store, or null if not yet loaded. */
+    private static ArrayList<Pack> packs;
+
+    /** Return the pack directory. */
+    static File packDir() {
+        return new File(objectsDir(), PACK_DIR);
+    }
+
+    /** Return the packs in the store.  Packs are loaded by one thread at
+     *  a time, as files may be written by several. */
+    static synchronized List<Pack> packs() {
+        if (packs == null) {
+            packs = new ArrayList<>();
+            String[] names = packDir().list();
+            if (names != null) {
+                Arrays.sort(names);
+                for (String name : names) {
+                    if (name.endsWith(".idx")) {
+                        String base = name.substring(0, name.length() - 4);
+                        packs.add(new Pack(new File(packDir(), base + ".pack"),
+                                new File(packDir(), name)));
+                    }
+                }
+            }
+        }
+        return packs;
+    }
+
+    /** Forget the packs loaded so far, so that they are looked up again
+     *  when next needed. */
+    static synchronized void reloadPacks() {
+        packs = null;
+    }
+
+    /** Return the pack holding the object with SHA, or null if it is not
+     *  packed. */
+    static Pack findPack(String sha) {
+        for (Pack pack : packs()) {
+            if (pack.contains(sha)) {
+                return pack;
+            }
+        }
+        return null;
+    }
+
+    /** Return the whole uncompressed contents of the object with SHA. */
+    static byte[] readContents(String sha) {
+        try (InputStream in = open(sha)) {
+            return in.readAllBytes();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return the number of bytes the object with SHA occupies on disk. */
+    static long storedSize(String sha) {
+        Pack pack = findPack(sha);
+        if (pack != null) {
+            return pack.storedSize(sha);
+        }
+        return objectFile(sha).length();
+    }
+
+    /** Copy the packed object with SHA out into a loose object. */
+    static void unpack(String sha) {
+        ObjectWriter out = newWriter(sha);
+        try (InputStream in = open(sha)) {
+            in.transferTo(out);
+            out.close();
+        } catch (IOException excp) {
+            out.abort();
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return true iff the loose object FILE is stored deflated. */
+    static boolean isDeflated(File file) {
+        try (FileInputStream in = new FileInputStream(file)) {
+            return in.read() == ZLIB_HEADER;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return a stream over the uncompressed contents of the object with
+     *  SHA.  Throws IllegalArgumentException in case of problems. */
+    static InputStream open(String sha) {
+        Pack pack = findPack(sha);
+        if (pack != null) {
+            return pack.open(sha);
+        }
+        try {
+            InputStream raw = new BufferedInputStream(
+                    new FileInputStream(objectFile(sha)), BUFFER_SIZE);
+            raw.mark(1);
+            int first = raw.read();
+            raw.reset();
+            if (first == ZLIB_HEADER) {
+                return new InflaterInputStream(raw);
+            }
+            return raw;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Store an object whose uncompressed contents are CONTENTS, unless it
+     *  is already there, and return its SHA. */
+    static String write(byte[] contents) {
+        return write(contents, null);
+    }
+
+    /** Store CONTENTS as the object with SHA, unless it is already there,
+     *  and return SHA.  If SHA is null, the object is named by the SHA of
+     *  CONTENTS, as usual; otherwise CONTENTS are a stored form of that
+     *  object other than its contents, from which its reader rebuilds
+     *  them. */
+    static String write(byte[] contents, String sha) {
+        ObjectWriter out = newWriter(sha);
+        try {
+            out.write(contents);
+            out.close();
+        } catch (IOException excp) {
+            out.abort();
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return out.sha();
+    }
+
+    /** Store the contents of FILE as a blob, unless it is already there,
+     *  and return the blob's SHA.  FILE is read once, through a fixed-size
+     *  buffer, and hashed and compressed as it is read, so the memory used
+     *  does not depend on FILE's size.  A file longer than
+     *  Chunker.THRESHOLD is stored as a chunk list instead, and the SHA of
+     *  the list returned. */
+    static String writeBlob(File file) {
+        return ingest(file, true);
+    }
+
+    /** Store CONTENTS as writeBlob would store a file holding them, and
+     *  return the SHA. */
+    static String writeBlob(byte[] contents) {
+        try {
+            return ingest(new ByteArrayInputStream(contents),
+                    contents.length, true);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return the SHA the blob holding the contents of FILE would have,
+     *  reading FILE as writeBlob does but storing nothing. */
+    static String hashBlob(File file) {
+        return ingest(file, false);
+    }
+
+    /** Return the SHA of the blob or chunk list holding the contents of
+     *  FILE, storing it iff STORE. */
+    private static String ingest(File file, boolean store) {
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            return ingest(in, file.length(), store);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return the SHA of the blob or chunk list holding the SIZE bytes
+     *  read from IN, storing it iff STORE. */
+    private static String ingest(InputStream in, long size, boolean store)
+        throws IOException {
+        if (Chunker.isLarge(size)) {
+            byte[] chunks = Codec.encode(Chunker.split(in, store));
+            return store ? write(chunks) : Utils.sha1(chunks);
+        }
+        if (!store) {
+            MessageDigest digest = Utils.fileSha1();
+            try (OutputStream out = new DigestOutputStream(
+                    OutputStream.nullOutputStream(), digest)) {
+                copyBlob(in, out);
+            }
+            return Utils.toHex(digest.digest());
+        }
+        ObjectWriter out = newWriter();
+        try {
+            copyBlob(in, out);
+            out.close();
+        } catch (IOException excp) {
+            out.abort();
+            throw excp;
+        }
+        return out.sha();
+    }
+
+    /** Write the encoding of the blob holding the contents of IN to
+     *  OUT. */
+    private static void copyBlob(InputStream in, OutputStream out)
+        throws IOException {
+        out.write(Codec.blobHeader());
+        byte[] buf = new byte[INGEST_BUFFER_SIZE];
+        for (int n = in.read(buf); n >= 0; n = in.read(buf)) {
+            out.write(buf, 0, n);
+        }
+    }
+
+    /** Return a stream over the contents of the file held by the blob or
+     *  chunk list with SHA.  The chunks of a chunk list are opened one at
+     *  a time, as the stream reaches them. */
+    static InputStream openBlob(String sha) {
+        InputStream in = open(sha);
+        try {
+            if (Codec.readBlobHeader(in) == Codec.BLOB) {
+                return in;
+            }
+            Iterator<String> chunks =
+                Codec.decodeChunkList(in).getShas().iterator();
+            in.close();
+            return new SequenceInputStream(new Enumeration<InputStream>() {
+                @Override
+                public boolean hasMoreElements() {
+                    return chunks.hasNext();
+                }
+
+                @Override
+                public InputStream nextElement() {
+                    return openBlob(chunks.next());
+                }
+            });
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Replace the contents of FILE with those of the file held by the
+     *  blob or chunk list with SHA.  The bytes go straight from the store
+     *  to FILE: compressed objects are inflated from a mapping of the loose
+     *  object or the pack directly into a buffer that is written to FILE,
+     *  and uncompressed loose objects are copied by the file system. */
+    static void checkout(String sha, File file) {
+        try (FileChannel out = FileChannel.open(file.toPath(),
+                StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            copyBlob(sha, out, ByteBuffer.allocateDirect(INGEST_BUFFER_SIZE));
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Append the contents of the file held by the blob or chunk list with
+     *  SHA to OUT, using BUF to hold inflated bytes. */
+    private static void copyBlob(String sha, FileChannel out, ByteBuffer buf)
+        throws IOException {
+        Pack pack = findPack(sha);
+        if (pack != null && pack.isWhole(sha)) {
+            inflateBlob(pack.rawData(sha), out, buf);
+            return;
+        }
+        File loose = objectFile(sha);
+        if (pack == null && isDeflated(loose)) {
+            try (FileChannel in = FileChannel.open(loose.toPath(),
+                    StandardOpenOption.READ)) {
+                inflateBlob(in.map(FileChannel.MapMode.READ_ONLY, 0,
+                        in.size()), out, buf);
+            }
+            return;
+        }
+        try (InputStream in = open(sha)) {
+            if (Codec.readBlobHeader(in) == Codec.CHUNKS) {
+                copyChunks(Codec.decodeChunkList(in), out, buf);
+            } else if (pack == null) {
+                try (FileChannel src = FileChannel.open(loose.toPath(),
+                        StandardOpenOption.READ)) {
+                    long pos = Codec.HEADER_SIZE, size = src.size();
+                    while (pos < size) {
+                        pos += src.transferTo(pos, size - pos, out);
+                    }
+                }
+            } else {
+                in.transferTo(Channels.newOutputStream(out));
+            }
+        }
+    }
+
+    /** Append the contents of the file held by the blob or chunk list
+     *  whose deflated encoding is DEFLATED to OUT, inflating through BUF. */
+    private static void inflateBlob(ByteBuffer deflated, FileChannel out,
+                                    ByteBuffer buf) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(deflated);
+            byte[] header = new byte[Codec.HEADER_SIZE];
+            int n = 0;
+            while (n < header.length && !inflater.finished()) {
+                n += inflate(inflater, header, n);
+            }
+            if (n < header.length) {
+                throw new IOException("truncated object");
+            }
+            if (Codec.readBlobHeader(new ByteArrayInputStream(header))
+                    == Codec.CHUNKS) {
+                ByteArrayOutputStream rest = new ByteArrayOutputStream();
+                byte[] b = new byte[BUFFER_SIZE];
+                while (!inflater.finished()) {
+                    rest.write(b, 0, inflate(inflater, b, 0));
+                }
+                copyChunks(Codec.decodeChunkList(
+                        new ByteArrayInputStream(rest.toByteArray())),
+                        out, buf);
+                return;
+            }
+            while (!inflater.finished()) {
+                buf.clear();
+                try {
+                    inflater.inflate(buf);
+                } catch (DataFormatException excp) {
+                    throw new IOException(excp.getMessage());
+                }
+                if (inflater.needsInput() && !inflater.finished()) {
+                    throw new IOException("truncated object");
+                }
+                buf.flip();
+                while (buf.hasRemaining()) {
+                    out.write(buf);
+                }
+            }
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /** Inflate bytes from INFLATER into B from offset OFF on, and return
+     *  how many were inflated. */
+    private static int inflate(Inflater inflater, byte[] b, int off)
+        throws IOException {
+        try {
+            int n = inflater.inflate(b, off, b.length - off);
+            if (n == 0 && inflater.needsInput() && !inflater.finished()) {
+                throw new IOException("truncated object");
+            }
+            return n;
+        } catch (DataFormatException excp) {
+            throw new IOException(excp.getMessage());
+        }
+    }
+
+    /** Append the contents of each of the CHUNKS to OUT in turn, using BUF
+     *  to hold inflated bytes. */
+    private static void copyChunks(ChunkList chunks, FileChannel out,
+                                   ByteBuffer buf) throws IOException {
+        for (String chunk : chunks.getShas()) {
+            copyBlob(chunk, out, buf);
+        }
+    }
+
+    /** Return a writer for a new object.  The object's contents are
+     *  written to it uncompressed; it is stored once the writer is
+     *  closed. */
+    static ObjectWriter newWriter() {
+        return newWriter(null);
+    }
+
+    /** Return a writer for a new object that is named SHA, whatever its
+     *  contents, or by the SHA of its contents if SHA is null. */
+    static ObjectWriter newWriter(String sha) {
+        try {
+            objectsDir().mkdirs();
+            return new ObjectWriter(
+                    File.createTempFile("tmp_obj_", null, objectsDir()),
+                    sha);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Create an empty object store. */
+    static void create() {
+        objectsDir().mkdirs();
+    }
+
+    /** Move the objects of a repository written with the old flat layout,
+     *  where every object sat directly in .gitlet, into the fan-out
+     *  layout.  Objects are first gathered under a scratch directory that
+     *  is renamed into place once every object has moved, so a run that is
+     *  interrupted part way simply resumes the next time.  Does nothing if
+     *  the repository already uses the fan-out layout. */
+    static void upgradeLayout() {
+        File objects = objectsDir();
+        if (objects.isDirectory()) {
+            return;
+        }
+        File scratch = new File(Utils.gitletPath(OBJECTS_DIR + ".upgrade"));
+        scratch.mkdirs();
+        File[] listing = new File(Utils.gitletPath(".")).listFiles();
+        for (File F : listing) {
+            String name = F.getName();
+            if (!F.isFile() || !isObjectName(name)) {
+                continue;
+            }
+            File fanout = new File(scratch, name.substring(0, FANOUT_LENGTH));
+            fanout.mkdir();
+            File target = new File(fanout, name.substring(FANOUT_LENGTH));
+            if (!F.renameTo(target)) {
+                throw Utils.error("Could not move object %s.", name);
+            }
+        }
+        if (!scratch.renameTo(objects)) {
+            throw Utils.error("Could not install object directory.");
+        }
+    }
+
+    /** Return true iff NAME looks like a full object SHA. */
+    private static boolean isObjectName(String name) {
+        if (name.length() != Utils.UID_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i += 1) {
+            char c = name.charAt(i);
+            if (!(c >= '0' && c <= '9') && !(c >= 'a' && c <= 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** An output stream that hashes and deflates an object's contents
+     *  into a temporary file as they are written, and moves the file to the
+     *  object's place in the store when closed. */
+    static class ObjectWriter extends FilterOutputStream {
+
+        /** A writer whose compressed output goes to TEMP, for the object
+         *  named NAME, or by the SHA of its contents if NAME is null. */
+        private ObjectWriter(File temp, String name) throws IOException {
+            super(null);
+            this.temp = temp;
+            this.name = name;
+            digest = Utils.newSha1();
+            out = new DigestOutputStream(
+                    new DeflaterOutputStream(new BufferedOutputStream(
+                            new FileOutputStream(temp), BUFFER_SIZE)),
+                    digest);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (sha != null) {
+                return;
+            }
+            out.close();
+            sha = name != null ? name : Utils.toHex(digest.digest());
+            File target = objectFile(sha);
+            if (target.exists()) {
+                temp.delete();
+            } else {
+                target.getParentFile().mkdir();
+                Files.move(temp.toPath(), target.toPath(),
+                        StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+
+        /** Discard whatever has been written so far. */
+        void abort() {
+            try {
+                out.close();
+            } catch (IOException excp) {
+                /* Ignore: the temporary file is being thrown away. */
+            }
+            temp.delete();
+        }
+
+        /** Return the SHA of the object written, once closed. */
+        String sha() {
+            return sha;
+        }
+
+        /** The temporary file receiving the compressed contents. */
+        private final File temp;
+
+        /** The SHA the object is to be named by, or null to name it by
+         *  that of its contents. */
+        private final String name;
+
+        /** Digest of the uncompressed contents written so far. */
+        private final MessageDigest digest;
+
+        /** The SHA of the stored object, or null while still open. */
+        private String sha;
+    }
+
+}
@@ -0,0 +1,357 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.InflaterInputStream;
+
+/** A pack: many objects bundled into one memory-mapped file, each stored
+ *  whole or as a Delta from another object in the pack, with a sorted
+ *  index whose fan-out table narrows a lookup to one bucket.
+ *  @author Ryan Brill
+ */
+class Pack {
+
+    /** Magic number at the start of every pack file ("GPAK"). */
+    static final int PACK_MAGIC = 0x4750414b;
+
+    /** Magic number at the start of every index file ("GIDX"). */
+    static final int IDX_MAGIC = 0x47494458;
+
+    /** The pack and index format version. */
+    static final int VERSION = 1;
+
+    /** Size of the pack file header. */
+    static final int PACK_HEADER_SIZE = 12;
+
+    /** Size of the index header, including its fan-out table. */
+    static final int IDX_HEADER_SIZE = 8 + 256 * 4;
+
+    /** Number of bytes in a raw SHA-1. */
+    static final int ID_SIZE = 20;
+
+    /** Entry kind of an object stored whole. */
+    static final byte WHOLE = 1;
+
+    /** Entry kind of an object stored as a delta against another. */
+    static final byte DELTA = 2;
+
+    /** Most bytes of rebuilt delta bases kept in memory at once. */
+    static final long BASE_CACHE_BYTES = 32L << 20;
+
+    /** Size of an entry header: its kind and data length. */
+    static final int ENTRY_HEADER_SIZE = 5;
+
+    /** The largest pack we will write, since a pack is mapped in one
+     *  piece. */
+    static final long MAX_PACK_SIZE = Integer.MAX_VALUE;
+
+    /** The pack whose pack and index files are PACKFILE and IDXFILE. */
+    Pack(File packFile, File idxFile) {
+        pack = map(packFile);
+        idx = map(idxFile);
+        if (pack.getInt(0) != PACK_MAGIC || idx.getInt(0) != IDX_MAGIC
+                || idx.getInt(4) != VERSION) {
+            throw Utils.error("Corrupt pack %s.", packFile.getName());
+        }
+        count = idx.getInt(IDX_HEADER_SIZE - 4);
+        name = packFile.getName();
+    }
+
+    /** Return the number of objects in this pack. */
+    int size() {
+        return count;
+    }
+
+    /** Return the name of this pack's file. */
+    String name() {
+        return name;
+    }
+
+    /** Return the SHA of the Kth object in index order. */
+    String sha(int k) {
+        byte[] raw = new byte[ID_SIZE];
+        idx.get(IDX_HEADER_SIZE + k * ID_SIZE, raw);
+        return Utils.toHex(raw);
+    }
+
+    /** Return the position in index order of the object with SHA, or -1
+     *  if it is not in this pack. */
+    int find(String sha) {
+        if (sha.length() != Utils.UID_LENGTH) {
+            return -1;
+        }
+        byte[] target = toRaw(sha);
+        int lo = bucketStart(target[0] & 0xff);
+        int hi = bucketEnd(target[0] & 0xff) - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = compareAt(mid, target);
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /** Return true iff this pack holds the object with SHA. */
+    boolean contains(String sha) {
+        return find(sha) >= 0;
+    }
+
+    /** Return a stream over the uncompressed contents of the object with
+     *  SHA, which must be in this pack. */
+    InputStream open(String sha) {
+        int k = find(sha);
+        if (k < 0) {
+            throw new IllegalArgumentException("object not in pack");
+        }
+        long offset = offset(k);
+        if (kind(offset) == WHOLE) {
+            return openEntry(offset);
+        }
+        return new ByteArrayInputStream(entryContents(offset));
+    }
+
+    /** Return true iff the object with SHA, which must be in this pack,
+     *  is stored whole rather than as a delta. */
+    boolean isWhole(String sha) {
+        return kind(offset(find(sha))) == WHOLE;
+    }
+
+    /** Return the number of bytes the object with SHA, which must be in
+     *  this pack, occupies in it. */
+    int storedSize(String sha) {
+        return pack.getInt((int) offset(find(sha)) + 1);
+    }
+
+    /** Return the kind of the entry at OFFSET. */
+    private byte kind(long offset) {
+        return pack.get((int) offset);
+    }
+
+    /** Return the uncompressed contents of the entry at OFFSET, rebuilding
+     *  it from its delta base if need be. */
+    private byte[] entryContents(long offset) {
+        int pos = (int) offset;
+        try {
+            if (kind(offset) == WHOLE) {
+                return openEntry(offset).readAllBytes();
+            }
+            int length = pack.getInt(pos + 1);
+            byte[] base = new byte[ID_SIZE];
+            pack.get(pos + ENTRY_HEADER_SIZE, base);
+            ByteBuffer data = pack.slice(pos + ENTRY_HEADER_SIZE + ID_SIZE,
+                    length - ID_SIZE);
+            byte[] delta = new InflaterInputStream(
+                    new BufferInputStream(data)).readAllBytes();
+            return Delta.apply(baseContents(Utils.toHex(base)), delta);
+        } catch (IOException excp) {
+            throw Utils.error("Corrupt pack %s.", name);
+        }
+    }
+
+    /** Return the uncompressed contents of the delta base with SHA, which
+     *  must be in this pack. */
+    private byte[] baseContents(String sha) {
+        byte[] contents = BASE_CACHE.get(sha);
+        if (contents == null) {
+            int k = find(sha);
+            if (k < 0) {
+                throw Utils.error("Corrupt pack %s.", name);
+            }
+            contents = entryContents(offset(k));
+            BASE_CACHE.put(sha, contents);
+        }
+        return contents;
+    }
+
+    /** Return the deflated contents of the object with SHA, which must be
+     *  in this pack, as a slice of the mapped pack. */
+    ByteBuffer rawData(String sha) {
+        int k = find(sha);
+        if (k < 0) {
+            throw new IllegalArgumentException("object not in pack");
+        }
+        return entryData(offset(k));
+    }
+
+    /** Return a stream over the uncompressed contents of the entry at
+     *  OFFSET. */
+    private InputStream openEntry(long offset) {
+        return new InflaterInputStream(
+                new BufferInputStream(entryData(offset)));
+    }
+
+    /** Return the data of the WHOLE entry at OFFSET, which is the
+     *  object's deflated contents. */
+    private ByteBuffer entryData(long offset) {
+        int pos = (int) offset;
+        if (pack.get(pos) != WHOLE) {
+            throw Utils.error("Corrupt pack %s.", name);
+        }
+        int length = pack.getInt(pos + 1);
+        return pack.slice(pos + ENTRY_HEADER_SIZE, length);
+    }
+
+    /** Return the pack offset of the Kth object in index order. */
+    long offset(int k) {
+        return idx.getLong(IDX_HEADER_SIZE + count * ID_SIZE + k * 8);
+    }
+
+    /** Return the index of the first object whose SHA starts with the
+     *  byte BUCKET. */
+    private int bucketStart(int bucket) {
+        return bucket == 0 ? 0 : idx.getInt(8 + (bucket - 1) * 4);
+    }
+
+    /** Return one more than the index of the last object whose SHA
+     *  starts with the byte BUCKET. */
+    private int bucketEnd(int bucket) {
+        return idx.getInt(8 + bucket * 4);
+    }
+
+    /** Compare the SHA of the Kth object with the raw SHA TARGET. */
+    private int compareAt(int k, byte[] target) {
+        int base = IDX_HEADER_SIZE + k * ID_SIZE;
+        for (int i = 0; i < ID_SIZE; i += 1) {
+            int cmp = Integer.compare(idx.get(base + i) & 0xff,
+                    target[i] & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return 0;
+    }
+
+    /** Return the raw bytes of the hexadecimal SHA. */
+    static byte[] toRaw(String sha) {
+        byte[] raw = new byte[sha.length() / 2];
+        for (int i = 0; i < raw.length; i += 1) {
+            raw[i] = (byte) Integer.parseInt(
+                    sha.substring(2 * i, 2 * i + 2), 16);
+        }
+        return raw;
+    }
+
+    /** Return FILE mapped read-only into memory. */
+    private static MappedByteBuffer map(File file) {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            FileChannel channel = raf.getChannel();
+            return channel.map(FileChannel.MapMode.READ_ONLY,
+                    0, channel.size());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** The mapped pack file. */
+    private final MappedByteBuffer pack;
+
+    /** The mapped index file. */
+    private final MappedByteBuffer idx;
+
+    /** The number of objects in this pack. */
+    private final int count;
+
+    /** The name of the pack file. */
+    private final String name;
+
+    /** Rebuilt delta bases, shared by all packs since a SHA names the same
+     *  contents wherever it is stored. */
+    private static final BaseCache BASE_CACHE =
+        new BaseCache(BASE_CACHE_BYTES);
+
+    /** A least-recently-used cache of object contents holding at most a
+     *  given number of bytes.  It may be shared by threads. */
+    static class BaseCache {
+
+        /** A cache holding at most BUDGET bytes. */
+        BaseCache(long budget) {
+            this.budget = budget;
+        }
+
+        /** Return the contents cached for SHA, or null. */
+        synchronized byte[] get(String sha) {
+            return entries.get(sha);
+        }
+
+        /** Cache CONTENTS for SHA, evicting the least recently used
+         *  entries as needed.  Contents larger than the whole budget are
+         *  not cached. */
+        synchronized void put(String sha, byte[] contents) {
+            if (contents.length > budget) {
+                return;
+            }
+            byte[] old = entries.put(sha, contents);
+            if (old != null) {
+                used -= old.length;
+            }
+            used += contents.length;
+            Iterator<Map.Entry<String, byte[]>> oldest =
+                entries.entrySet().iterator();
+            while (used > budget) {
+                used -= oldest.next().getValue().length;
+                oldest.remove();
+            }
+        }
+
+        /** The cached contents, least recently used first. */
+        private final LinkedHashMap<String, byte[]> entries =
+            new LinkedHashMap<>(16, 0.75f, true);
+
+        /** Most bytes to hold. */
+        private final long budget;
+
+        /** Bytes currently held. */
+        private long used;
+    }
+
+    /** An input stream reading the remaining bytes of a buffer. */
+    static class BufferInputStream extends InputStream {
+
+        /** A stream over the remaining bytes of BUF. */
+        BufferInputStream(ByteBuffer buf) {
+            this.buf = buf;
+        }
+
+        @Override
+        public int read() {
+            return buf.hasRemaining() ? buf.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buf.hasRemaining()) {
+                return -1;
+            }
+            len = Math.min(len, buf.remaining());
+            buf.get(b, off, len);
+            return len;
+        }
+
+        @Override
+        public int available() {
+            return buf.remaining();
+        }
+
+        /** The buffer being read. */
+        private final ByteBuffer buf;
+    }
+
+}
@@ -0,0 +1,302 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+
+/** Writes a pack file and its index from objects already in the store,
+ *  storing versions of a file as deltas from one another where that pays.
+ *  @author Ryan Brill
+ */
+class PackWriter {
+
+    /** Number of preceding objects each object is compared against. */
+    static final int WINDOW = 10;
+
+    /** Longest chain of deltas allowed. */
+    static final int MAX_DEPTH = 10;
+
+    /** Objects stored in more bytes than this are never deltified, to
+     *  bound the memory used while packing. */
+    static final int MAX_DELTA_SOURCE = 16 << 20;
+
+    /** A writer that will pack the objects with SHAS.  PATHS maps the SHAs
+     *  of objects that hold the contents of a file to that file's name. */
+    PackWriter(List<String> shas, Map<String, String> paths) {
+        toPack = new ArrayList<>(shas);
+        Collections.sort(toPack);
+        this.paths = paths;
+    }
+
+    /** Write and install the pack, and return the SHAs of the objects
+     *  that went into it.  Objects that would push the pack past
+     *  Pack.MAX_PACK_SIZE are left out. */
+    List<String> write() {
+        File dir = ObjectStore.packDir();
+        dir.mkdirs();
+        ArrayList<String> packed = new ArrayList<>();
+        ArrayList<Long> offsets = new ArrayList<>();
+        ArrayList<String> order = planDeltas();
+        try {
+            File temp = File.createTempFile("tmp_pack_", null, dir);
+            try (RandomAccessFile raf = new RandomAccessFile(temp, "rw")) {
+                FileChannel out = raf.getChannel();
+                out.write(header(Pack.PACK_MAGIC, 0));
+                for (String sha : order) {
+                    long offset = out.position();
+                    if (!writeEntry(out, sha)) {
+                        out.truncate(offset);
+                        out.position(offset);
+                        break;
+                    }
+                    packed.add(sha);
+                    offsets.add(offset);
+                }
+                out.write(header(Pack.PACK_MAGIC, packed.size()), 0);
+            }
+            if (packed.isEmpty()) {
+                temp.delete();
+                return packed;
+            }
+            sortByName(packed, offsets);
+            name = "pack-" + packName(packed);
+            File idxTemp = File.createTempFile("tmp_idx_", null, dir);
+            writeIndex(idxTemp, packed, offsets);
+            Files.move(temp.toPath(), new File(dir, name + ".pack").toPath(),
+                    StandardCopyOption.ATOMIC_MOVE);
+            Files.move(idxTemp.toPath(), new File(dir, name + ".idx").toPath(),
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw Utils.error("Could not write pack: %s", excp.getMessage());
+        }
+        return packed;
+    }
+
+    /** Choose the objects to store as deltas, and their bases.  Return
+     *  the order in which to write the objects, which puts every delta base
+     *  before the deltas made against it. */
+    private ArrayList<String> planDeltas() {
+        ArrayList<String> candidates = new ArrayList<>();
+        HashMap<String, Integer> sizes = new HashMap<>();
+        for (String sha : toPack) {
+            if (paths.containsKey(sha)) {
+                int size = (int) Math.min(Integer.MAX_VALUE,
+                        ObjectStore.storedSize(sha));
+                if (size <= MAX_DELTA_SOURCE) {
+                    candidates.add(sha);
+                    sizes.put(sha, size);
+                }
+            }
+        }
+        candidates.sort((a, b) -> {
+            int cmp = paths.get(a).compareTo(paths.get(b));
+            return cmp != 0 ? cmp : Integer.compare(sizes.get(b), sizes.get(a));
+        });
+
+        HashMap<String, Integer> depths = new HashMap<>();
+        ArrayDeque<String> windowShas = new ArrayDeque<>();
+        ArrayDeque<Delta.Index> window = new ArrayDeque<>();
+        for (String sha : candidates) {
+            byte[] contents = ObjectStore.readContents(sha);
+            Iterator<String> bases = windowShas.iterator();
+            byte[] best = null;
+            String bestBase = null;
+            for (Delta.Index index : window) {
+                String base = bases.next();
+                if (depths.get(base) >= MAX_DEPTH) {
+                    continue;
+                }
+                int limit = best == null ? contents.length / 2 : best.length;
+                byte[] delta = Delta.create(index, contents, limit);
+                if (delta != null) {
+                    best = delta;
+                    bestBase = base;
+                }
+            }
+            if (best != null) {
+                deltas.put(sha, bestBase);
+                deltaData.put(sha, deflateBytes(best));
+                depths.put(sha, depths.get(bestBase) + 1);
+            } else {
+                depths.put(sha, 0);
+            }
+            windowShas.addFirst(sha);
+            window.addFirst(new Delta.Index(contents));
+            if (window.size() > WINDOW) {
+                windowShas.removeLast();
+                window.removeLast();
+            }
+        }
+
+        ArrayList<String> order = new ArrayList<>(candidates);
+        HashSet<String> planned = new HashSet<>(candidates);
+        for (String sha : toPack) {
+            if (!planned.contains(sha)) {
+                order.add(sha);
+            }
+        }
+        return order;
+    }
+
+    /** Append the entry for the object with SHA to OUT.  Return false,
+     *  writing nothing, if it would not fit in the pack. */
+    private boolean writeEntry(FileChannel out, String sha)
+        throws IOException {
+        byte kind = Pack.WHOLE;
+        ByteBuffer data = null;
+        File loose = ObjectStore.objectFile(sha);
+        Pack pack = ObjectStore.findPack(sha);
+        if (deltas.containsKey(sha)) {
+            kind = Pack.DELTA;
+            byte[] delta = deltaData.get(sha);
+            data = ByteBuffer.allocate(Pack.ID_SIZE + delta.length);
+            data.put(Pack.toRaw(deltas.get(sha))).put(delta).flip();
+        } else if (pack != null && pack.isWhole(sha)) {
+            data = pack.rawData(sha);
+        } else if (pack != null || !ObjectStore.isDeflated(loose)) {
+            data = ByteBuffer.wrap(deflate(ObjectStore.open(sha)));
+        }
+        long length = (data == null) ? loose.length() : data.remaining();
+        if (out.position() + Pack.ENTRY_HEADER_SIZE + length
+                > Pack.MAX_PACK_SIZE) {
+            return false;
+        }
+        ByteBuffer entryHeader = ByteBuffer.allocate(Pack.ENTRY_HEADER_SIZE);
+        entryHeader.put(kind).putInt((int) length).flip();
+        out.write(entryHeader);
+        if (data != null) {
+            while (data.hasRemaining()) {
+                out.write(data);
+            }
+        } else {
+            try (FileInputStream in = new FileInputStream(loose)) {
+                FileChannel src = in.getChannel();
+                long done = 0;
+                while (done < length) {
+                    done += src.transferTo(done, length - done, out);
+                }
+            }
+        }
+        return true;
+    }
+
+    /** Sort PACKED into ascending order, permuting OFFSETS alongside. */
+    private static void sortByName(ArrayList<String> packed,
+                                   ArrayList<Long> offsets) {
+        HashMap<String, Long> offsetOf = new HashMap<>();
+        for (int i = 0; i < packed.size(); i += 1) {
+            offsetOf.put(packed.get(i), offsets.get(i));
+        }
+        Collections.sort(packed);
+        for (int i = 0; i < packed.size(); i += 1) {
+            offsets.set(i, offsetOf.get(packed.get(i)));
+        }
+    }
+
+    /** Write the index of the objects PACKED, which start at OFFSETS in
+     *  the pack, to FILE. */
+    private void writeIndex(File file, List<String> packed,
+                            List<Long> offsets) throws IOException {
+        int n = packed.size();
+        ByteBuffer buf = ByteBuffer.allocate(
+                Pack.IDX_HEADER_SIZE + n * (Pack.ID_SIZE + 8));
+        buf.putInt(Pack.IDX_MAGIC).putInt(Pack.VERSION);
+        int[] fanout = new int[256];
+        for (String sha : packed) {
+            fanout[Integer.parseInt(sha.substring(0, 2), 16)] += 1;
+        }
+        int total = 0;
+        for (int b = 0; b < 256; b += 1) {
+            total += fanout[b];
+            buf.putInt(total);
+        }
+        for (String sha : packed) {
+            buf.put(Pack.toRaw(sha));
+        }
+        for (long offset : offsets) {
+            buf.putLong(offset);
+        }
+        buf.flip();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            FileChannel out = raf.getChannel();
+            while (buf.hasRemaining()) {
+                out.write(buf);
+            }
+        }
+    }
+
+    /** Return a pack file header with MAGIC and object count COUNT. */
+    private static ByteBuffer header(int magic, int count) {
+        ByteBuffer buf = ByteBuffer.allocate(Pack.PACK_HEADER_SIZE);
+        buf.putInt(magic).putInt(Pack.VERSION).putInt(count).flip();
+        return buf;
+    }
+
+    /** Return the name of a pack holding exactly the sorted SHAS. */
+    private static String packName(List<String> shas) {
+        MessageDigest md = Utils.newSha1();
+        for (String sha : shas) {
+            md.update(Pack.toRaw(sha));
+        }
+        return Utils.toHex(md.digest());
+    }
+
+    /** Return BYTES deflated. */
+    private static byte[] deflateBytes(byte[] bytes) {
+        try {
+            return deflate(new ByteArrayInputStream(bytes));
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return the contents of IN deflated. */
+    static byte[] deflate(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DeflaterOutputStream out = new DeflaterOutputStream(bytes)) {
+            in.transferTo(out);
+        }
+        in.close();
+        return bytes.toByteArray();
+    }
+
+    /** Return the name, without extension, of the pack written, or null
+     *  if none was. */
+    String name() {
+        return name;
+    }
+
+    /** The name of the pack written. */
+    private String name;
+
+    /** SHAs of the objects to pack, in ascending order. */
+    private final ArrayList<String> toPack;
+
+    /** Names of the files whose contents objects hold, by SHA. */
+    private final Map<String, String> paths;
+
+    /** The base chosen for each object to be stored as a delta. */
+    private final HashMap<String, String> deltas = new HashMap<>();
+
+    /** The deflated delta of each object to be stored as a delta. */
+    private final HashMap<String, byte[]> deltaData = new HashMap<>();
+
+}
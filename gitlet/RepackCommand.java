@@ -0,0 +1,89 @@
+package gitlet;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/** The repack command: bundles every object into a single pack.
+ *  @author Ryan Brill
+ */
+class RepackCommand implements Command, Serializable {
+
+    /** Return true iff N is the proper number of operands for this command. */
+    public boolean properNumOperands(int n) {
+        return n == 1;
+    }
+
+    /** Execute this command, using TRACKER. */
+    public void execute(Tracker tracker) {
+        List<String> loose = ObjectStore.looseObjects();
+        List<Pack> oldPacks = new ArrayList<>(ObjectStore.packs());
+        HashSet<String> all = new HashSet<>(loose);
+        for (Pack pack : oldPacks) {
+            for (int k = 0; k < pack.size(); k += 1) {
+                all.add(pack.sha(k));
+            }
+        }
+        if (all.isEmpty()) {
+            return;
+        }
+
+        PackWriter writer =
+            new PackWriter(new ArrayList<>(all), blobPaths(tracker));
+        List<String> packed = writer.write();
+        HashSet<String> inNewPack = new HashSet<>(packed);
+        for (String sha : all) {
+            if (!inNewPack.contains(sha) && !ObjectStore.isLoose(sha)) {
+                ObjectStore.unpack(sha);
+            }
+        }
+        for (Pack pack : oldPacks) {
+            String base = pack.name().replaceAll("\\.pack$", "");
+            if (!base.equals(writer.name())) {
+                new File(ObjectStore.packDir(), base + ".idx").delete();
+                new File(ObjectStore.packDir(), base + ".pack").delete();
+            }
+        }
+        for (String sha : loose) {
+            if (inNewPack.contains(sha)) {
+                File file = ObjectStore.objectFile(sha);
+                file.delete();
+                file.getParentFile().delete();
+            }
+        }
+        ObjectStore.reloadPacks();
+    }
+
+    /** Return the name of a file each blob tracked by a commit or staged
+     *  in TRACKER holds the contents of, keyed by the blob's SHA.  A tree
+     *  shared by several commits is read once. */
+    private HashMap<String, String> blobPaths(Tracker tracker) {
+        HashMap<String, String> paths = new HashMap<>();
+        HashSet<String> seenTrees = new HashSet<>();
+        CommitRegistry.get().forEach(commitSha -> {
+            Commit commit = Utils.shaToCommit(commitSha);
+            if (commit.getTreeReference().equals("")) {
+                paths.putAll(invert(commit.blobMap()));
+            } else {
+                Tree.walk(commit.getTreeReference(), "", seenTrees,
+                    (path, sha) -> paths.put(sha, path));
+            }
+        });
+        paths.putAll(invert(tracker.getStagingArea()));
+        return paths;
+    }
+
+    /** Return BLOBMAP with its keys and values exchanged. */
+    private HashMap<String, String> invert(Map<String, String> blobMap) {
+        HashMap<String, String> inverse = new HashMap<>();
+        for (Map.Entry<String, String> entry : blobMap.entrySet()) {
+            inverse.put(entry.getValue(), entry.getKey());
+        }
+        return inverse;
+    }
+
+}
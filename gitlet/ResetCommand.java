@@ -1,8 +1,6 @@
 package gitlet;
 
-import java.io.File;
 import java.io.Serializable;
-import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.HashSet;
 
@@ -13,7 +11,7 @@ class ResetCommand implements Command, Serializable {
 
     /** Set C to be the commitSha of this checkout command. */
     ResetCommand(String C) {
-        commitSha = Utils.fullSha(C);
+        commitSha = C;
     }
 
     /** Return true iff N is the proper number of operands for this command. */
@@ -23,55 +21,25 @@ class ResetCommand implements Command, Serializable {
 
     /** Execute this command, using TRACKER. */
     public void execute(Tracker tracker) {
-        if (!tracker.commitShaExists(commitSha)) {
-            System.out.println("No commit with that id exists.");
-            System.exit(0);
-        }
+        commitSha = IdIndex.get().resolve(commitSha);
 
 
-        Commit commit = Utils.readObject(
-                new File(Utils.gitletPath(commitSha)),
-                Commit.class
-        );
+        Commit commit = Utils.shaToCommit(commitSha);
         HashMap<String, String> blobs = commit.blobMap();
 
         HashSet<String> workingDirListing = Utils.workingDirFileNames();
         for (String fileName : workingDirListing) {
             if (!fileName.startsWith(".") && tracker.isUntracked(fileName)) {
                 if (blobs.containsKey(fileName)) {
-                    System.out.println(
-                            "There is an untracked file in the way; "
-                                    + "delete it or add it first.");
-                    System.exit(0);
+                    throw Utils.error("There is an untracked file in the way; "
+                            + "delete it or add it first.");
                 }
             }
         }
 
-        for (String fileName : blobs.keySet()) {
-            Blob blob = Utils.readObject(
-                    new File(Utils.gitletPath(blobs.get(fileName))),
-                    Blob.class
-            );
-            Utils.writeContents(
-                    new File(Utils.workingDirPath(fileName)),
-                    new String(blob.getContents(), StandardCharsets.UTF_8)
-            );
-        }
-
         String headCommitSha = tracker.getCurrentBranchReference();
-        Commit headCommit = Utils.readObject(
-                new File(Utils.gitletPath(headCommitSha)),
-                Commit.class
-        );
-        for (String fileName : headCommit.blobMap().keySet()) {
-            if (!blobs.containsKey(fileName)) {
-
-                if (Utils.workingDirFileNames().contains(fileName)) {
-                    (new File(Utils.workingDirPath(fileName))).delete();
-                }
-
-            }
-        }
+        Commit headCommit = Utils.shaToCommit(headCommitSha);
+        Materializer.update(headCommit.blobMap(), blobs);
 
         tracker.setCurrentBranchReference(commitSha);
         tracker.clearStage();
@@ -20,12 +20,10 @@ class RmBranchCommand implements Command, Serializable {
     /** Execute this command, using TRACKER. */
     public void execute(Tracker tracker) {
         if (!tracker.branchNameExists(branchName)) {
-            System.out.println("A branch with that name does not exist.");
-            System.exit(0);
+            throw Utils.error("A branch with that name does not exist.");
         }
         if (tracker.getCurrentBranchName().equals(branchName)) {
-            System.out.println("Cannot remove the current branch.");
-            System.exit(0);
+            throw Utils.error("Cannot remove the current branch.");
         }
         tracker.deleteBranch(branchName);
     }
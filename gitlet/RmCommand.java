@@ -22,12 +22,10 @@ class RmCommand implements Command, Serializable {
     public void execute(Tracker tracker) {
 
         String headCommitReference = tracker.getCurrentBranchReference();
-        Commit headCommit = Utils.readObject(
-                new File(Utils.gitletPath(headCommitReference)), Commit.class);
+        Commit headCommit = Utils.shaToCommit(headCommitReference);
 
         if (!tracker.isStaged(fileName) && !headCommit.isTracking(fileName)) {
-            System.out.println("No reason to remove the file.");
-            System.exit(0);
+            throw Utils.error("No reason to remove the file.");
         }
 
         tracker.removeFromStage(fileName);
@@ -0,0 +1,21 @@
+package gitlet;
+
+import java.io.Serializable;
+
+/** The serve command: runs other commands sent to it over a socket until
+ *  stopped, keeping the repository's state in memory between them.
+ *  @author Ryan Brill
+ */
+class ServeCommand implements Command, Serializable {
+
+    /** Return true iff N is the proper number of operands for this command. */
+    public boolean properNumOperands(int n) {
+        return n == 1;
+    }
+
+    /** Execute this command, using TRACKER. */
+    public void execute(Tracker tracker) {
+        Server.serve();
+    }
+
+}
@@ -0,0 +1,248 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/** The server, started by the serve command, which runs commands one at
+ *  a time for clients over .gitlet/serve.sock, so that each command is
+ *  spared starting a JVM and reading the tracker.
+ *  @author Ryan Brill
+ */
+class Server {
+
+    /** Name of the socket within .gitlet. */
+    static final String SOCKET_FILE = "serve.sock";
+
+    /** Frame holding standard output. */
+    private static final byte OUT = 'o';
+
+    /** Frame holding standard error. */
+    private static final byte ERR = 'e';
+
+    /** Frame holding the exit status. */
+    private static final byte EXIT = 'x';
+
+    /** Size of the buffers holding a command's output. */
+    private static final int BUFFER_SIZE = 8192;
+
+    /* THE CLIENT. */
+
+    /** Return true iff COMMAND should be forwarded to a server, there
+     *  being one. */
+    static boolean forwards(String command) {
+        return runsInServer(command) && socketFile().exists();
+    }
+
+    /** Run the command given by ARGS in the server, copying its output to
+     *  ours.  Return its exit status, or -1, having done nothing, if no
+     *  server answers. */
+    static int forward(String... args) {
+        try (SocketChannel channel =
+                 SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            try {
+                channel.connect(address());
+            } catch (IOException excp) {
+                return -1;
+            }
+            DataOutputStream request = new DataOutputStream(
+                    new BufferedOutputStream(
+                            Channels.newOutputStream(channel)));
+            request.writeInt(args.length);
+            for (String arg : args) {
+                request.writeUTF(arg);
+            }
+            request.flush();
+            DataInputStream reply = new DataInputStream(
+                    Channels.newInputStream(channel));
+            byte[] buf = new byte[BUFFER_SIZE];
+            while (true) {
+                byte kind = reply.readByte();
+                int length = reply.readInt();
+                if (kind == EXIT) {
+                    System.out.flush();
+                    return length;
+                }
+                PrintStream out = kind == ERR ? System.err : System.out;
+                while (length > 0) {
+                    int n = reply.read(buf, 0, Math.min(length, buf.length));
+                    if (n < 0) {
+                        throw new IOException("server closed connection");
+                    }
+                    out.write(buf, 0, n);
+                    length -= n;
+                }
+            }
+        } catch (IOException excp) {
+            System.err.println("Lost the server: " + excp.getMessage());
+            return 1;
+        }
+    }
+
+    /* THE SERVER. */
+
+    /** Serve clients until stopped. */
+    static void serve() {
+        File socket = socketFile();
+        if (socket.exists()) {
+            try (SocketChannel channel =
+                     SocketChannel.open(StandardProtocolFamily.UNIX)) {
+                channel.connect(address());
+                throw Utils.error("A server is already running.");
+            } catch (IOException excp) {
+                socket.delete();
+            }
+        }
+        try (ServerSocketChannel server =
+                 ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(address());
+            Runtime.getRuntime().addShutdownHook(
+                    new Thread(() -> socket.delete()));
+            stamp = Journal.stamp();
+            while (true) {
+                SocketChannel client = server.accept();
+                Thread handler = new Thread(() -> handle(client));
+                handler.setDaemon(true);
+                handler.start();
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Could not serve: %s", excp.getMessage());
+        }
+    }
+
+    /** Read a command from CLIENT, run it and send back its output. */
+    private static void handle(SocketChannel client) {
+        try (client) {
+            DataInputStream request = new DataInputStream(
+                    Channels.newInputStream(client));
+            String[] args = new String[request.readInt()];
+            for (int i = 0; i < args.length; i += 1) {
+                args[i] = request.readUTF();
+            }
+            DataOutputStream reply = new DataOutputStream(
+                    new BufferedOutputStream(
+                            Channels.newOutputStream(client), BUFFER_SIZE));
+            int status;
+            synchronized (Server.class) {
+                status = execute(args, reply);
+            }
+            reply.writeByte(EXIT);
+            reply.writeInt(status);
+            reply.flush();
+        } catch (IOException excp) {
+            return;
+        }
+    }
+
+    /** Run the command given by ARGS, sending its output to REPLY, and
+     *  return its exit status. */
+    private static int execute(String[] args, DataOutputStream reply) {
+        PrintStream stdout = System.out;
+        PrintStream stderr = System.err;
+        PrintStream out = new PrintStream(new BufferedOutputStream(
+                new FrameOutputStream(reply, OUT), BUFFER_SIZE),
+                false, StandardCharsets.UTF_8);
+        PrintStream err = new PrintStream(new BufferedOutputStream(
+                new FrameOutputStream(reply, ERR), BUFFER_SIZE),
+                false, StandardCharsets.UTF_8);
+        System.setOut(out);
+        System.setErr(err);
+        int status = 0;
+        try {
+            if (!Journal.stamp().equals(stamp)) {
+                Main.forgetTracker();
+            }
+            FsMonitor.reset();
+            StatCache.reset();
+            CommitGraph.reset();
+            ChangedPaths.reset();
+            MessageIndex.reset();
+            CommitRegistry.reset();
+            IdIndex.reset();
+            if (args.length > 0 && !runsInServer(args[0])) {
+                throw Utils.error("That command cannot be run by the server.");
+            }
+            Main.run(args);
+        } catch (GitletException excp) {
+            System.out.println(excp.getMessage());
+            Main.forgetTracker();
+        } catch (RuntimeException | Error excp) {
+            excp.printStackTrace();
+            Main.forgetTracker();
+            status = 1;
+        } finally {
+            out.flush();
+            err.flush();
+            System.setOut(stdout);
+            System.setErr(stderr);
+            stamp = Journal.stamp();
+        }
+        return status;
+    }
+
+    /** Return true iff COMMAND may be run by the server: it must finish,
+     *  and not start a server or watcher of its own. */
+    private static boolean runsInServer(String command) {
+        return !command.equals("serve") && !command.equals("watch");
+    }
+
+    /** Return the socket file. */
+    private static File socketFile() {
+        return new File(Utils.gitletPath(SOCKET_FILE));
+    }
+
+    /** Return the address of the socket. */
+    private static UnixDomainSocketAddress address() {
+        return UnixDomainSocketAddress.of(socketFile().toPath());
+    }
+
+    /** The state of the tracker and journal files after the last
+     *  command. */
+    private static String stamp;
+
+    /** Writes whatever is written to it as frames of one kind. */
+    private static class FrameOutputStream extends OutputStream {
+
+        /** A stream writing frames of kind KIND to OUT. */
+        FrameOutputStream(DataOutputStream out, byte kind) {
+            this.out = out;
+            this.kind = kind;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len > 0) {
+                out.writeByte(kind);
+                out.writeInt(len);
+                out.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        /** Where frames go. */
+        private final DataOutputStream out;
+
+        /** The kind of the frames written. */
+        private final byte kind;
+    }
+
+}
@@ -0,0 +1,420 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/** The index: a cache of the blob SHAs of working files, trusted while a
+ *  file's size, times and inode are unchanged and its time is older than
+ *  the index's, so that a file is only hashed again once it has changed.
+ *  @author Ryan Brill
+ */
+class StatCache {
+
+    /** Name of the index file within .gitlet. */
+    static final String INDEX_FILE = "index";
+
+    /** First four bytes of an index file: "GSTC". */
+    private static final int MAGIC = 0x47535443;
+
+    /** The format version written. */
+    private static final int VERSION = 2;
+
+    /** Return the index of the current repository, reading it the first
+     *  time. */
+    static StatCache get() {
+        if (cache == null) {
+            cache = new StatCache();
+            cache.read();
+        }
+        return cache;
+    }
+
+    /** Forget the index read, so that the next command reads it
+     *  again. */
+    static void reset() {
+        cache = null;
+    }
+
+    /** Write the index of the current repository, if it was read and has
+     *  changed since. */
+    static void saveIfChanged() {
+        if (cache != null && (cache.advanceToken() || cache.changed)) {
+            cache.write();
+        }
+    }
+
+    /** Return the SHA of the blob holding the contents of the working file
+     *  FILENAME, hashing the file only if it changed since it was last
+     *  hashed. */
+    String hash(String fileName) {
+        verified.add(fileName);
+        String sha = unchanged(fileName);
+        if (sha != null) {
+            return sha;
+        }
+        File file = new File(Utils.workingDirPath(fileName));
+        Stat stat = stat(file);
+        sha = lookup(fileName, stat);
+        if (sha == null) {
+            sha = ObjectStore.hashBlob(file);
+            put(fileName, stat, sha);
+        }
+        return sha;
+    }
+
+    /** Return the SHAs of the blobs holding the contents of the working
+     *  files FILENAMES, by file name, as hash would, leaving out any
+     *  deleted meanwhile. */
+    HashMap<String, String> hashAll(Collection<String> fileNames) {
+        return examineAll(fileNames, false);
+    }
+
+    /** Store the contents of the working files FILENAMES as blobs, as store
+     *  would, and return their SHAs by file name, leaving out any deleted
+     *  meanwhile. */
+    HashMap<String, String> storeAll(Collection<String> fileNames) {
+        return examineAll(fileNames, true);
+    }
+
+    /** Return the SHAs of the blobs holding the contents of the working
+     *  files FILENAMES, by file name, storing the blobs missing from the
+     *  store iff STORE.  The files are examined and those that changed
+     *  hashed on all processors, each with its own digest, so every file
+     *  is read at most once, and twice if its blob must be stored; the
+     *  cache itself is only consulted and updated by the calling thread.
+     *  A file deleted before it could be read is taken as deleted: it is
+     *  left out, and dropped from the cache. */
+    private HashMap<String, String> examineAll(Collection<String> fileNames,
+                                               boolean store) {
+        HashMap<String, String> result = new HashMap<>();
+        ArrayList<String> unknown = new ArrayList<>();
+        for (String fileName : fileNames) {
+            verified.add(fileName);
+            String sha = unchanged(fileName);
+            if (sha != null && (!store || ObjectStore.contains(sha))) {
+                result.put(fileName, sha);
+            } else {
+                unknown.add(fileName);
+            }
+        }
+        Stat[] stats = new Stat[unknown.size()];
+        IntStream.range(0, stats.length).parallel().forEach(k ->
+            stats[k] = stat(new File(Utils.workingDirPath(unknown.get(k)))));
+        String[] shas = new String[stats.length];
+        ArrayList<Integer> changedFiles = new ArrayList<>();
+        for (int k = 0; k < stats.length; k += 1) {
+            shas[k] = lookup(unknown.get(k), stats[k]);
+            if (shas[k] == null
+                    || (store && !ObjectStore.contains(shas[k]))) {
+                changedFiles.add(k);
+            }
+        }
+        changedFiles.parallelStream().forEach(k -> {
+            File file = new File(Utils.workingDirPath(unknown.get(k)));
+            try {
+                shas[k] = store ? storeIfNew(file)
+                    : ObjectStore.hashBlob(file);
+            } catch (IllegalArgumentException excp) {
+                if (file.isFile()) {
+                    throw excp;
+                }
+            }
+        });
+        for (int k : changedFiles) {
+            put(unknown.get(k), shas[k] == null ? null : stats[k], shas[k]);
+        }
+        for (int k = 0; k < shas.length; k += 1) {
+            if (shas[k] != null) {
+                result.put(unknown.get(k), shas[k]);
+            }
+        }
+        return result;
+    }
+
+    /** Return the SHA of the blob holding the contents of FILE, storing it
+     *  only if no such blob is stored yet. */
+    private static String storeIfNew(File file) {
+        String sha = ObjectStore.hashBlob(file);
+        if (ObjectStore.contains(sha)) {
+            return sha;
+        }
+        return ObjectStore.writeBlob(file);
+    }
+
+    /** Store the contents of the working file FILENAME as a blob and
+     *  return its SHA, reading the file only if it changed since it was
+     *  last hashed or its blob is not stored. */
+    String store(String fileName) {
+        verified.add(fileName);
+        String sha = unchanged(fileName);
+        if (sha != null && ObjectStore.contains(sha)) {
+            return sha;
+        }
+        File file = new File(Utils.workingDirPath(fileName));
+        Stat stat = stat(file);
+        sha = lookup(fileName, stat);
+        if (sha == null || !ObjectStore.contains(sha)) {
+            sha = ObjectStore.writeBlob(file);
+            put(fileName, stat, sha);
+        }
+        return sha;
+    }
+
+    /** Record that the working file FILENAME was just written with the
+     *  contents of the blob with SHA. */
+    void written(String fileName, String sha) {
+        verified.add(fileName);
+        put(fileName, stat(new File(Utils.workingDirPath(fileName))), sha);
+    }
+
+    /** Return the SHA cached for FILENAME if the file system monitor has
+     *  seen no change to it since the index's token, else null. */
+    private String unchanged(String fileName) {
+        Entry entry = entries.get(fileName);
+        FsMonitor snapshot = FsMonitor.snapshot();
+        if (entry == null || snapshot == null
+                || !snapshot.unchangedSince(epoch, batch, fileName)) {
+            return null;
+        }
+        return entry.sha;
+    }
+
+    /** Move the index's token up to the file system monitor's snapshot,
+     *  if there is one and every file changed since the token has been
+     *  checked.  Return true iff the token moved. */
+    private boolean advanceToken() {
+        FsMonitor snapshot = FsMonitor.snapshot();
+        if (snapshot == null
+                || (snapshot.epoch() == epoch && snapshot.batch() == batch)) {
+            return false;
+        }
+        for (String fileName : entries.keySet()) {
+            if (!verified.contains(fileName)
+                    && snapshot.fileNames().contains(fileName)
+                    && !snapshot.unchangedSince(epoch, batch, fileName)) {
+                return false;
+            }
+        }
+        epoch = snapshot.epoch();
+        batch = snapshot.batch();
+        return true;
+    }
+
+    /** Return the SHA cached for FILENAME if it may be trusted for a file
+     *  with STAT, else null. */
+    private String lookup(String fileName, Stat stat) {
+        Entry entry = entries.get(fileName);
+        if (entry == null || stat == null || !entry.stat.equals(stat)) {
+            return null;
+        }
+        if (entry.stat.mtime >= indexTime) {
+            changed = true;
+            return null;
+        }
+        return entry.sha;
+    }
+
+    /** Cache SHA as that of FILENAME, whose stat data was STAT. */
+    private void put(String fileName, Stat stat, String sha) {
+        if (stat == null) {
+            changed |= entries.remove(fileName) != null;
+            return;
+        }
+        Entry old = entries.put(fileName, new Entry(stat, sha));
+        changed |= old == null || !old.stat.equals(stat)
+            || !old.sha.equals(sha);
+    }
+
+    /** Return the stat data of FILE, or null if it cannot be had. */
+    private static Stat stat(File file) {
+        Path path = file.toPath();
+        try {
+            Map<String, Object> attrs = Files.readAttributes(path,
+                    "unix:size,lastModifiedTime,ctime,ino",
+                    LinkOption.NOFOLLOW_LINKS);
+            return new Stat((Long) attrs.get("size"),
+                    nanos((FileTime) attrs.get("lastModifiedTime")),
+                    nanos((FileTime) attrs.get("ctime")),
+                    (Long) attrs.get("ino"));
+        } catch (UnsupportedOperationException
+                 | IllegalArgumentException excp) {
+            try {
+                BasicFileAttributes attrs = Files.readAttributes(path,
+                        BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                return new Stat(attrs.size(),
+                        nanos(attrs.lastModifiedTime()), 0, 0);
+            } catch (IOException excp2) {
+                return null;
+            }
+        } catch (IOException excp) {
+            return null;
+        }
+    }
+
+    /** Return TIME in nanoseconds. */
+    private static long nanos(FileTime time) {
+        return time.to(TimeUnit.NANOSECONDS);
+    }
+
+    /** Read the index file, leaving the cache empty if it is missing or
+     *  unreadable: the index is only a cache. */
+    private void read() {
+        File file = indexFile();
+        if (!file.exists()) {
+            return;
+        }
+        try {
+            indexTime = nanos(Files.getLastModifiedTime(file.toPath()));
+            DataInputStream in = new DataInputStream(
+                    new ByteArrayInputStream(Utils.readContents(file)));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                changed = true;
+                return;
+            }
+            epoch = in.readLong();
+            batch = in.readLong();
+            int n = in.readInt();
+            byte[] sha = new byte[Codec.SHA_SIZE];
+            for (int i = 0; i < n; i += 1) {
+                String fileName = in.readUTF();
+                Stat stat = new Stat(in.readLong(), in.readLong(),
+                        in.readLong(), in.readLong());
+                in.readFully(sha);
+                entries.put(fileName, new Entry(stat, Utils.toHex(sha)));
+            }
+        } catch (IOException | IllegalArgumentException excp) {
+            entries.clear();
+            changed = true;
+        }
+    }
+
+    /** Write the index file, in ascending order of file name. */
+    private void write() {
+        ArrayList<String> fileNames = new ArrayList<>(entries.keySet());
+        Collections.sort(fileNames);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(epoch);
+            out.writeLong(batch);
+            out.writeInt(fileNames.size());
+            for (String fileName : fileNames) {
+                Entry entry = entries.get(fileName);
+                out.writeUTF(fileName);
+                out.writeLong(entry.stat.size);
+                out.writeLong(entry.stat.mtime);
+                out.writeLong(entry.stat.ctime);
+                out.writeLong(entry.stat.inode);
+                out.write(Pack.toRaw(entry.sha));
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        Utils.writeContentsAtomically(indexFile(), bytes.toByteArray());
+        changed = false;
+    }
+
+    /** Return the index file. */
+    private static File indexFile() {
+        return new File(Utils.gitletPath(INDEX_FILE));
+    }
+
+    /** The index of the current repository, once read. */
+    private static StatCache cache;
+
+    /** Cached entries, by file name. */
+    private final HashMap<String, Entry> entries = new HashMap<>();
+
+    /** Modification time of the index file when read, in nanoseconds. */
+    private long indexTime = Long.MIN_VALUE;
+
+    /** Epoch of the file system monitor snapshot the index is up to date
+     *  with. */
+    private long epoch;
+
+    /** Batch number of the file system monitor snapshot the index is up
+     *  to date with. */
+    private long batch = -1;
+
+    /** Names of the files checked by this command. */
+    private final HashSet<String> verified = new HashSet<>();
+
+    /** True iff the entries differ from those in the index file. */
+    private boolean changed;
+
+    /** The stat data of a file that is compared to detect changes. */
+    private static class Stat {
+
+        /** Stat data of a file of length SIZE, modified at MTIME, whose
+         *  status changed at CTIME, with inode number INODE. */
+        Stat(long size, long mtime, long ctime, long inode) {
+            this.size = size;
+            this.mtime = mtime;
+            this.ctime = ctime;
+            this.inode = inode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Stat)) {
+                return false;
+            }
+            Stat other = (Stat) obj;
+            return size == other.size && mtime == other.mtime
+                && ctime == other.ctime && inode == other.inode;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(size) ^ Long.hashCode(mtime);
+        }
+
+        /** Length in bytes. */
+        private final long size;
+
+        /** Modification time in nanoseconds. */
+        private final long mtime;
+
+        /** Status change time in nanoseconds, or 0 where there is
+         *  none. */
+        private final long ctime;
+
+        /** Inode number, or 0 where there is none. */
+        private final long inode;
+    }
+
+    /** A cached SHA and the stat data of the file it was computed from. */
+    private static class Entry {
+
+        /** An entry caching SHA for a file with STAT. */
+        Entry(Stat stat, String sha) {
+            this.stat = stat;
+            this.sha = sha;
+        }
+
+        /** Stat data of the file when hashed. */
+        private final Stat stat;
+
+        /** SHA of the blob holding the file's contents. */
+        private final String sha;
+    }
+
+}
@@ -1,6 +1,5 @@
 package gitlet;
 
-import java.io.File;
 import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Set;
@@ -23,12 +22,36 @@ class StatusCommand implements Command, Serializable {
         displayStaged(tracker);
         displayMarkedForUntracking(tracker);
         String headCommitReference = tracker.getCurrentBranchReference();
-        Commit headCommit = Utils.readObject(
-                new File(Utils.gitletPath(headCommitReference)),
-                Commit.class
-        );
-        displayModificationsNotStaged(tracker, headCommit);
-        displayUntracked(tracker, headCommit);
+        Commit headCommit = Utils.shaToCommit(headCommitReference);
+        Set<String> workingDirFiles = Utils.workingDirFileNames();
+        HashMap<String, String> hashes =
+            hashCandidates(tracker, headCommit, workingDirFiles);
+        displayModificationsNotStaged(tracker, headCommit, workingDirFiles,
+                hashes);
+        displayUntracked(tracker, headCommit, workingDirFiles);
+    }
+
+    /** Return the SHAs of the contents of those WORKINGDIRFILES that
+     *  TRACKER stages or HEADCOMMIT tracks, by file name.  They are the
+     *  files status compares, and are hashed together, once each.  Those
+     *  deleted before they could be hashed are removed from
+     *  WORKINGDIRFILES. */
+    private HashMap<String, String> hashCandidates(
+            Tracker tracker, Commit headCommit, Set<String> workingDirFiles) {
+        ArrayList<String> candidates = new ArrayList<>();
+        for (String fileName : workingDirFiles) {
+            if (headCommit.isTracking(fileName)
+                    || tracker.isStaged(fileName)) {
+                candidates.add(fileName);
+            }
+        }
+        HashMap<String, String> hashes = StatCache.get().hashAll(candidates);
+        for (String fileName : candidates) {
+            if (!hashes.containsKey(fileName)) {
+                workingDirFiles.remove(fileName);
+            }
+        }
+        return hashes;
     }
 
     /** Using TRACKER, display what branches currently exist,
@@ -79,22 +102,24 @@ class StatusCommand implements Command, Serializable {
     }
 
     /** Using TRACKER, Display files that have been modified
-     *  in the HEADCOMMIT but not staged. */
+     *  in the HEADCOMMIT but not staged, given the WORKINGDIRFILES and
+     *  the HASHES of those compared. */
     private void displayModificationsNotStaged(
-            Tracker tracker, Commit headCommit) {
+            Tracker tracker, Commit headCommit, Set<String> workingDirFiles,
+            HashMap<String, String> hashes) {
         ArrayList<String> modifiedNotStaged = new ArrayList<>();
 
-        Set<String> workingDirFiles = Utils.workingDirFileNames();
-
         for (String fileName : workingDirFiles) {
             if (
                     headCommit.isTracking(fileName)
-                    && tracker.changedFromCommit(fileName, headCommit)
+                    && !hashes.get(fileName).equals(
+                            headCommit.getBlobReference(fileName))
                     && !tracker.isStaged(fileName)) {
                 modifiedNotStaged.add(fileName + " (modified)");
             } else if (
                 tracker.isStaged(fileName)
-                && tracker.changedFromStaging(fileName)) {
+                && !hashes.get(fileName).equals(
+                        tracker.getStagingArea().get(fileName))) {
                 modifiedNotStaged.add(fileName + " (modified)");
             }
         }
@@ -124,12 +149,13 @@ class StatusCommand implements Command, Serializable {
         System.out.println();
     }
 
-    /** Using TRACKER, Display files that unTracked, i.e. present in the
-     *  working directory but neither staged nor tracked by HEADCOMMIT. */
-    private void displayUntracked(Tracker tracker, Commit headCommit) {
+    /** Using TRACKER, Display files that unTracked, i.e. present among
+     *  the WORKINGDIRFILES but neither staged nor tracked by HEADCOMMIT. */
+    private void displayUntracked(Tracker tracker, Commit headCommit,
+                                  Set<String> workingDirFiles) {
         ArrayList<String> untracked = new ArrayList<>();
 
-        for (String fileName : Utils.workingDirFileNames()) {
+        for (String fileName : workingDirFiles) {
             if ((!tracker.isStaged(fileName)
                     || tracker.isStagedForRemoval(fileName))
                     && !headCommit.isTracking(fileName)) {
@@ -1,7 +1,5 @@
 package gitlet;
 
-import java.io.File;
-import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
 
@@ -9,7 +7,7 @@ import java.util.HashMap;
  *  including branches, blobs, commits, etc.
  *  @author Ryan Brill
  */
-class Tracker implements Serializable {
+class Tracker {
 
     /** The tracker is created with INITIALBRANCHNAME and INITIALCOMMIT. */
     Tracker(String initialBranchName, Commit initialCommit) {
@@ -18,8 +16,23 @@ class Tracker implements Serializable {
         currentBranchName = initialBranchName;
         branches = new HashMap<>();
         branches.put(initialBranchName,
-                Utils.sha1(Utils.serialize(initialCommit)));
-        allCommits = new ArrayList<>();
+                Utils.sha1(Codec.encode(initialCommit)));
+        listedCommits = new ArrayList<>();
+    }
+
+    /** A tracker whose current branch is CURRENTBRANCHNAME, with BRANCHES,
+     *  STAGINGAREA, REMOVETHESE, LISTEDCOMMITS and REMOTES as described
+     *  below. */
+    Tracker(String currentBranchName, HashMap<String, String> branches,
+            HashMap<String, String> stagingArea,
+            ArrayList<String> removeThese, ArrayList<String> listedCommits,
+            HashMap<String, String> remotes) {
+        this.currentBranchName = currentBranchName;
+        this.branches = branches;
+        this.stagingArea = stagingArea;
+        this.removeThese = removeThese;
+        this.listedCommits = listedCommits;
+        this.remotes = remotes;
     }
 
     /* BRANCHES. */
@@ -30,13 +43,21 @@ class Tracker implements Serializable {
     /** Add a branch with name BRANCHNAME to branches,
      *  and make its head reference the head of the current active branch. */
     void addBranch(String branchName) {
-        branches.put(branchName, getCurrentBranchReference());
+        setBranchReference(branchName, getCurrentBranchReference());
+    }
+
+    /** Make the head of the branch named BRANCHNAME, which need not exist,
+     *  the commit with SHA REF. */
+    void setBranchReference(String branchName, String ref) {
+        branches.put(branchName, ref);
+        log(Journal.SET_BRANCH, branchName, ref);
     }
 
     /** Delete the branch with name BRANCHNAME, and its associated pointer,
      *  from branches. */
     void deleteBranch(String branchName) {
         branches.remove(branchName);
+        log(Journal.DELETE_BRANCH, branchName);
     }
 
     /** Return the HashMap containing info about all the branches. */
@@ -60,6 +81,7 @@ class Tracker implements Serializable {
     /** Change the name of the current active branch to BRANCHNAME. */
     void changeCurrentBranchName(String branchName) {
         currentBranchName = branchName;
+        log(Journal.CURRENT_BRANCH, branchName);
     }
 
     /** Return the active branch name. */
@@ -74,14 +96,13 @@ class Tracker implements Serializable {
 
     /** Change the SHA of the head commit of the current branch to REF. */
     void setCurrentBranchReference(String ref) {
-        branches.put(currentBranchName, ref);
+        setBranchReference(currentBranchName, ref);
     }
 
     /** Return true iff FILENAME is not tracked in the current branch. */
     boolean isUntracked(String fileName) {
         String headCommitSha = getCurrentBranchReference();
-        Commit headCommit = Utils.readObject(
-                new File(Utils.gitletPath(headCommitSha)), Commit.class);
+        Commit headCommit = Utils.shaToCommit(headCommitSha);
         HashMap<String, String> blobs = headCommit.blobMap();
         return !blobs.containsKey(fileName) && !isStaged(fileName);
     }
@@ -99,11 +120,13 @@ class Tracker implements Serializable {
     /** Allow FILENAME to be removed in the next commit. */
     void remove(String fileName) {
         removeThese.add(fileName);
+        log(Journal.REMOVE, fileName);
     }
 
     /** After a commit, there is nothing left to be removed. */
     void clearRemoveThese() {
         removeThese.clear();
+        log(Journal.CLEAR_REMOVALS);
     }
 
     /** Return the list of fileNames to be removed from the upcoming commit. */
@@ -119,6 +142,7 @@ class Tracker implements Serializable {
     /** Cancel the removal of FILENAME by deleting it from removeThese. */
     void cancelRemoval(String fileName) {
         removeThese.remove(fileName);
+        log(Journal.CANCEL_REMOVAL, fileName);
     }
 
     /* THE STAGING AREA (STAGE). */
@@ -129,6 +153,7 @@ class Tracker implements Serializable {
     /** Add the Blob with name FILENAME and sha SHA to the Staging Area. */
     void stage(String fileName, String sha) {
         stagingArea.put(fileName, sha);
+        log(Journal.STAGE, fileName, sha);
     }
 
     /** Return true if FILENAME is staged. */
@@ -139,11 +164,13 @@ class Tracker implements Serializable {
     /** Clear the staging area (After a commit, or checkout case3). */
     void clearStage() {
         stagingArea = new HashMap<>();
+        log(Journal.CLEAR_STAGE);
     }
 
     /** Remove fileName from the staging area (unStage FILENAME). */
     void removeFromStage(String fileName) {
         stagingArea.remove(fileName);
+        log(Journal.UNSTAGE, fileName);
     }
 
     /** Return the staging area. */
@@ -153,22 +180,24 @@ class Tracker implements Serializable {
 
     /* STUFF DEALING WITH COMMITS. */
 
-    /** A list containing references to every commit in .gitlet repo. */
-    private ArrayList<String> allCommits;
+    /** References to the commits of a repository whose tracker was saved
+     *  before commits were kept in the commit registry, and listed them
+     *  itself; empty once they are moved there (see CommitRegistry). */
+    private ArrayList<String> listedCommits;
 
-    /** Add REF, a reference to a commit, to allCommits. */
-    void addCommit(String ref) {
-        allCommits.add(ref);
+    /** Add REF, a reference to a commit, to listedCommits. */
+    void listCommit(String ref) {
+        listedCommits.add(ref);
     }
 
-    /** Return the list containing references to every commit. */
-    ArrayList<String> getAllCommits() {
-        return allCommits;
+    /** Return the commits this tracker lists. */
+    ArrayList<String> getListedCommits() {
+        return listedCommits;
     }
 
-    /** Return true iff a commit with Sha COMMITSHA exists. */
-    boolean commitShaExists(String commitSha) {
-        return allCommits.contains(commitSha);
+    /** Forget the commits this tracker lists. */
+    void clearListedCommits() {
+        listedCommits = new ArrayList<>();
     }
 
     /* REMOTE DIRECTORIES. */
@@ -178,6 +207,48 @@ class Tracker implements Serializable {
     /** Add remote repo with name NAME and directory PATH. */
     void addRemote(String name, String path) {
         remotes.put(name, path);
+        log(Journal.ADD_REMOTE, name, path);
+    }
+
+    /** Return the remote repos. */
+    HashMap<String, String> getRemotes() {
+        return remotes;
+    }
+
+    /* THE JOURNAL. */
+
+    /** The journal recording changes to this tracker, or null if they are
+     *  not journaled. */
+    private Journal journal;
+
+    /** Number of the checkpoint this tracker was last saved as. */
+    private long checkpoint;
+
+    /** Record changes to this tracker in JOURNAL from now on. */
+    void setJournal(Journal journal) {
+        this.journal = journal;
+    }
+
+    /** Return the journal recording changes to this tracker, or null. */
+    Journal getJournal() {
+        return journal;
+    }
+
+    /** Return the number of the checkpoint this tracker was saved as. */
+    long getCheckpoint() {
+        return checkpoint;
+    }
+
+    /** Set the number of the checkpoint this tracker is saved as to N. */
+    void setCheckpoint(long n) {
+        checkpoint = n;
+    }
+
+    /** Journal operation OP with OPERANDS, if changes are journaled. */
+    private void log(byte op, String... operands) {
+        if (journal != null) {
+            journal.record(op, operands);
+        }
     }
 
     /* Miscellaneous. */
@@ -186,39 +257,12 @@ class Tracker implements Serializable {
      *  and would be overwritten by checkout, reset, or merge,
      *  end the program and print an error. */
     void checkUntrackedFileInTheWay() {
-        File[] workingDirectoryListing = (
-                new File(Utils.workingDirPath("."))).listFiles();
-        for (File F : workingDirectoryListing) {
-            if (!F.getName().startsWith(".") && isUntracked(F.getName())) {
-                System.out.println(
-                    "There is an untracked file in the way; "
-                    + "delete it or add it first.");
-                System.exit(0);
+        for (String fileName : Utils.workingDirFileNames()) {
+            if (isUntracked(fileName)) {
+                throw Utils.error("There is an untracked file in the way; "
+                        + "delete it or add it first.");
             }
         }
     }
 
-    /** Return true if FILENAME in the working directory
-     *  has changed from its contents in COMMIT. */
-    boolean changedFromCommit(String fileName, Commit commit) {
-        byte[] currentContents = Utils.readContents(
-                new File(Utils.workingDirPath(fileName)));
-        Blob currentBlob = new Blob(currentContents);
-        String currentBlobSha = Utils.sha1(Utils.serialize(currentBlob));
-        String previousBlobSha = commit.getBlobReference(fileName);
-        return !currentBlobSha.equals(previousBlobSha);
-    }
-
-    /** Return true if FILENAME in the working directory
-     *  has changed from its contents when it was staged. */
-    boolean changedFromStaging(String fileName) {
-        byte[] currentContents = Utils.readContents(
-                new File(Utils.workingDirPath(fileName)));
-        Blob currentBlob = new Blob(currentContents);
-        String currentBlobSha = Utils.sha1(Utils.serialize(currentBlob));
-        String previousBlobSha = stagingArea.get(fileName);
-        return !currentBlobSha.equals(previousBlobSha);
-    }
-
-
 }
@@ -0,0 +1,296 @@
+package gitlet;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+
+/** A tree: the listing of one directory of a commit, its files' blobs and
+ *  its subdirectories' trees by name, named by the SHA of its whole
+ *  encoding.  A new version of a tree may be stored as a delta from the
+ *  one it changes, and is stored whole every SNAPSHOT_INTERVAL versions.
+ *  @author Ryan Brill
+ */
+class Tree {
+
+    /** Separator of the names in a path. */
+    static final String SEPARATOR = "/";
+
+    /** Most versions of a tree stored, counting the whole one, before it
+     *  is stored whole again. */
+    static final int SNAPSHOT_INTERVAL = 16;
+
+    /** An empty tree. */
+    Tree() {
+        this("", 0);
+    }
+
+    /** An empty delta from the tree with SHA BASE, of depth DEPTH. */
+    Tree(String base, int depth) {
+        this.base = base;
+        this.depth = depth;
+    }
+
+    /** Return the SHA of the tree this delta changes, or "" if this is a
+     *  whole tree. */
+    String base() {
+        return base;
+    }
+
+    /** Return the number of deltas between this tree as stored and a
+     *  whole tree: 0 if it was stored whole. */
+    int depth() {
+        return depth;
+    }
+
+    /** Return the blobs of the files in this directory, by name. */
+    TreeMap<String, String> files() {
+        return files;
+    }
+
+    /** Return the trees of the subdirectories of this directory, by
+     *  name. */
+    TreeMap<String, String> subtrees() {
+        return subtrees;
+    }
+
+    /** Return the tree with SHA, or an empty tree if SHA is "". */
+    static Tree read(String sha) {
+        if (sha.equals("")) {
+            return new Tree();
+        }
+        return ObjectCache.tree(sha);
+    }
+
+    /** Return the whole tree stored as ENCODED, applying it to its base
+     *  if it is a delta. */
+    static Tree decode(byte[] encoded) {
+        Tree tree = Codec.decodeTree(encoded);
+        if (tree.base.equals("")) {
+            return tree;
+        }
+        return apply(read(tree.base), tree);
+    }
+
+    /** Store the trees of a commit whose files are FILES, blob SHAs by
+     *  path, and return the SHA of its root tree. */
+    static String write(Map<String, String> files) {
+        return update("", new TreeMap<>(files));
+    }
+
+    /** Return the SHA of the root tree of a commit whose files are those
+     *  of the commit whose root tree is ROOT but for the CHANGES: blob SHAs
+     *  by path, with null for a file removed.  Only the trees of the
+     *  directories holding changes are read and written again, each as a
+     *  delta unless it is due to be stored whole or is already stored.
+     *  A path with an empty name, "." or ".." in it is an error. */
+    static String update(String root, Map<String, String> changes) {
+        Tree old = read(root);
+        Tree delta = new Tree(root, old.depth + 1);
+        TreeMap<String, TreeMap<String, String>> below = new TreeMap<>();
+        for (Map.Entry<String, String> change : changes.entrySet()) {
+            String path = change.getKey();
+            int slash = path.indexOf(SEPARATOR);
+            String name = slash < 0 ? path : path.substring(0, slash);
+            if (name.equals("") || name.equals(".") || name.equals("..")) {
+                throw Utils.error("Invalid file name %s.", path);
+            }
+            if (slash < 0) {
+                String sha = change.getValue() == null ? ""
+                    : change.getValue();
+                if (!sha.equals(old.files.getOrDefault(path, ""))) {
+                    delta.files.put(path, sha);
+                }
+            } else {
+                below.computeIfAbsent(name, dir -> new TreeMap<>())
+                    .put(path.substring(slash + 1), change.getValue());
+            }
+        }
+        for (Map.Entry<String, TreeMap<String, String>> dir
+                 : below.entrySet()) {
+            String before = old.subtrees.getOrDefault(dir.getKey(), "");
+            String sha = update(before, dir.getValue());
+            if (!sha.equals(before)) {
+                delta.subtrees.put(dir.getKey(), sha);
+            }
+        }
+        if (delta.size() == 0) {
+            return root;
+        }
+        if (old.size() + growth(old.files, delta.files)
+                + growth(old.subtrees, delta.subtrees) == 0) {
+            return "";
+        }
+        byte[] whole = Codec.encode(apply(old, delta));
+        String sha = Utils.sha1(whole);
+        if (ObjectStore.contains(sha)) {
+            return sha;
+        }
+        if (root.equals("") || delta.depth >= SNAPSHOT_INTERVAL
+                || 2 * delta.size() > old.size()) {
+            return ObjectStore.write(whole);
+        }
+        return ObjectStore.write(Codec.encode(delta), sha);
+    }
+
+    /** Return the SHA of the blob of the file at PATH in the commit whose
+     *  root tree is ROOT, or null if it has none.  Only the trees of the
+     *  directories on PATH are read. */
+    static String blob(String root, String path) {
+        Tree tree = read(root);
+        int start = 0;
+        for (int slash = path.indexOf(SEPARATOR); slash >= 0;
+             slash = path.indexOf(SEPARATOR, start)) {
+            String subtree = tree.subtrees.get(path.substring(start, slash));
+            if (subtree == null) {
+                return null;
+            }
+            tree = read(subtree);
+            start = slash + 1;
+        }
+        return tree.files.get(path.substring(start));
+    }
+
+    /** Return the files of the commit whose root tree is ROOT, blob SHAs
+     *  by path. */
+    static HashMap<String, String> flatten(String root) {
+        HashMap<String, String> files = new HashMap<>();
+        walk(root, "", null, files::put);
+        return files;
+    }
+
+    /** Apply ACTION to the path and blob SHA of each file under the tree
+     *  with SHA, whose path is PREFIX, skipping the trees in SEEN and
+     *  adding those visited to it, unless it is null. */
+    static void walk(String sha, String prefix, Set<String> seen,
+                     BiConsumer<String, String> action) {
+        if (seen != null && !seen.add(sha)) {
+            return;
+        }
+        Tree tree = read(sha);
+        for (Map.Entry<String, String> file : tree.files.entrySet()) {
+            action.accept(prefix + file.getKey(), file.getValue());
+        }
+        for (Map.Entry<String, String> dir : tree.subtrees.entrySet()) {
+            walk(dir.getValue(), prefix + dir.getKey() + SEPARATOR, seen,
+                    action);
+        }
+    }
+
+    /** Return the files that differ between the commit FROM and the
+     *  commit TO: the SHA of each file's blob in TO, by path, or null for
+     *  a file TO lacks.  Between two commits with root trees, only the
+     *  subtrees that differ are read. */
+    static TreeMap<String, String> diff(Commit from, Commit to) {
+        TreeMap<String, String> changes = new TreeMap<>();
+        if (!from.getTreeReference().equals("")
+                && !to.getTreeReference().equals("")) {
+            diff(from.getTreeReference(), to.getTreeReference(), "",
+                    changes);
+            return changes;
+        }
+        HashMap<String, String> before = from.blobMap();
+        HashMap<String, String> after = to.blobMap();
+        for (Map.Entry<String, String> file : after.entrySet()) {
+            if (!file.getValue().equals(before.get(file.getKey()))) {
+                changes.put(file.getKey(), file.getValue());
+            }
+        }
+        for (String path : before.keySet()) {
+            if (!after.containsKey(path)) {
+                changes.put(path, null);
+            }
+        }
+        return changes;
+    }
+
+    /** Add the files that differ between the trees with SHAs FROM and TO,
+     *  whose path is PREFIX, to CHANGES, as diff does. */
+    private static void diff(String from, String to, String prefix,
+                             TreeMap<String, String> changes) {
+        if (from.equals(to)) {
+            return;
+        }
+        Tree before = read(from);
+        Tree after = read(to);
+        for (Map.Entry<String, String> file : after.files.entrySet()) {
+            if (!file.getValue().equals(before.files.get(file.getKey()))) {
+                changes.put(prefix + file.getKey(), file.getValue());
+            }
+        }
+        for (String name : before.files.keySet()) {
+            if (!after.files.containsKey(name)) {
+                changes.put(prefix + name, null);
+            }
+        }
+        for (Map.Entry<String, String> dir : after.subtrees.entrySet()) {
+            diff(before.subtrees.getOrDefault(dir.getKey(), ""),
+                    dir.getValue(), prefix + dir.getKey() + SEPARATOR,
+                    changes);
+        }
+        for (Map.Entry<String, String> dir : before.subtrees.entrySet()) {
+            if (!after.subtrees.containsKey(dir.getKey())) {
+                diff(dir.getValue(), "", prefix + dir.getKey() + SEPARATOR,
+                        changes);
+            }
+        }
+    }
+
+    /** Return the whole tree that results from applying DELTA to BASE. */
+    private static Tree apply(Tree base, Tree delta) {
+        Tree result = new Tree("", delta.depth);
+        result.files.putAll(base.files);
+        result.subtrees.putAll(base.subtrees);
+        applyEntries(result.files, delta.files);
+        applyEntries(result.subtrees, delta.subtrees);
+        return result;
+    }
+
+    /** Apply the CHANGES, SHAs by name with "" for an entry removed, to
+     *  ENTRIES. */
+    private static void applyEntries(TreeMap<String, String> entries,
+                                     TreeMap<String, String> changes) {
+        for (Map.Entry<String, String> change : changes.entrySet()) {
+            if (change.getValue().equals("")) {
+                entries.remove(change.getKey());
+            } else {
+                entries.put(change.getKey(), change.getValue());
+            }
+        }
+    }
+
+    /** Return how many more entries ENTRIES would hold with the CHANGES
+     *  applied. */
+    private static int growth(TreeMap<String, String> entries,
+                              TreeMap<String, String> changes) {
+        int growth = 0;
+        for (Map.Entry<String, String> change : changes.entrySet()) {
+            boolean present = entries.containsKey(change.getKey());
+            if (change.getValue().equals("") && present) {
+                growth -= 1;
+            } else if (!change.getValue().equals("") && !present) {
+                growth += 1;
+            }
+        }
+        return growth;
+    }
+
+    /** Return the number of entries of this tree. */
+    private int size() {
+        return files.size() + subtrees.size();
+    }
+
+    /** The SHA of the tree this delta changes, or "". */
+    private final String base;
+
+    /** The number of deltas between this tree and a whole one. */
+    private final int depth;
+
+    /** Blobs of the files in this directory, by name. */
+    private final TreeMap<String, String> files = new TreeMap<>();
+
+    /** Trees of the subdirectories of this directory, by name. */
+    private final TreeMap<String, String> subtrees = new TreeMap<>();
+
+}
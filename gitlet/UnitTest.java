@@ -3,9 +3,21 @@ package gitlet;
 import ucb.junit.textui;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
 
 import static org.junit.Assert.*;
 
@@ -37,13 +49,360 @@ public class UnitTest {
 
         StringBuilder expected = new StringBuilder();
         expected.append("===\ncommit "
-                + Utils.sha1(Utils.serialize(initialCommit)) + "\n");
+                + Utils.sha1(Codec.encode(initialCommit)) + "\n");
         expected.append("Date: Wed Dec 31 16:00:00 1969 -0800"
                 + "\ninitial commit\n");
 
         assertEquals(initialCommit.toString(), expected.toString());
     }
 
-}
+    /** Test that a commit survives encoding and decoding unchanged. */
+    @Test
+    public void commitCodecTest() {
+        Commit commit = new Commit("a message",
+                LocalDateTime.of(2020, 2, 29, 13, 5, 7, 123456789),
+                Utils.sha1("parent"));
+        commit.addToBlobMap("b.txt", Utils.sha1("b"));
+        commit.addToBlobMap("a.txt", Utils.sha1("a"));
+        byte[] encoded = Codec.encode(commit);
+        Commit decoded = Codec.decodeCommit(encoded);
+
+        assertEquals(commit.getLogMessage(), decoded.getLogMessage());
+        assertEquals(commit.getTimeStamp(), decoded.getTimeStamp());
+        assertEquals(commit.getParentReference(),
+                decoded.getParentReference());
+        assertEquals(commit.blobMap(), decoded.blobMap());
+        assertArrayEquals(encoded, Codec.encode(decoded));
+
+        commit.setSecondParentReference(Utils.sha1("second parent"));
+        encoded = Codec.encode(commit);
+        decoded = Codec.decodeCommit(encoded);
+        assertEquals(commit.getSecondParentReference(),
+                decoded.getSecondParentReference());
+        assertArrayEquals(encoded, Codec.encode(decoded));
+
+        commit.setTreeReference(Utils.sha1("tree"), commit.blobMap());
+        encoded = Codec.encode(commit);
+        decoded = Codec.decodeCommit(encoded);
+        assertEquals(commit.getTreeReference(), decoded.getTreeReference());
+        assertArrayEquals(encoded, Codec.encode(decoded));
+    }
+
+    /** Test that a tree survives encoding and decoding unchanged. */
+    @Test
+    public void treeCodecTest() {
+        Tree tree = new Tree();
+        tree.files().put("b.txt", Utils.sha1("b"));
+        tree.files().put("a.txt", Utils.sha1("a"));
+        tree.subtrees().put("src", Utils.sha1("src"));
+        Tree decoded = Codec.decodeTree(Codec.encode(tree));
+
+        assertEquals(tree.files(), decoded.files());
+        assertEquals(tree.subtrees(), decoded.subtrees());
+
+        Tree delta = new Tree(Utils.sha1("base"), 3);
+        delta.files().put("a.txt", "");
+        delta.files().put("c.txt", Utils.sha1("c"));
+        decoded = Codec.decodeTree(Codec.encode(delta));
+        assertEquals(delta.base(), decoded.base());
+        assertEquals(3, decoded.depth());
+        assertEquals(delta.files(), decoded.files());
+    }
+
+    /** Test that a tracker survives encoding and decoding unchanged. */
+    @Test
+    public void trackerCodecTest() {
+        Commit initialCommit = new Commit("initial commit",
+                LocalDateTime.ofInstant(
+                    Instant.EPOCH, ZoneId.of("America/Los_Angeles")),
+                "");
+        Tracker tracker = new Tracker("master", initialCommit);
+        tracker.listCommit(Utils.sha1(Codec.encode(initialCommit)));
+        tracker.addBranch("other");
+        tracker.stage("f.txt", Utils.sha1("f"));
+        tracker.remove("g.txt");
+        Tracker decoded = Codec.decodeTracker(Codec.encode(tracker));
+
+        assertEquals("master", decoded.getCurrentBranchName());
+        assertEquals(tracker.getBranches(), decoded.getBranches());
+        assertEquals(tracker.getStagingArea(), decoded.getStagingArea());
+        assertEquals(tracker.getRemoveThese(), decoded.getRemoveThese());
+        assertEquals(tracker.getListedCommits(),
+                decoded.getListedCommits());
+    }
+
+    /** Test that an insertion into a large file changes only the chunks
+     *  near it. */
+    @Test
+    public void chunkBoundaryTest() throws IOException {
+        byte[] data = new byte[2 * (int) Chunker.THRESHOLD];
+        new Random(61).nextBytes(data);
+        byte[] edited = new byte[data.length + 1];
+        int mid = data.length / 2;
+        System.arraycopy(data, 0, edited, 0, mid);
+        System.arraycopy(data, mid, edited, mid + 1, data.length - mid);
+        ChunkList before =
+            Chunker.split(new ByteArrayInputStream(data), false);
+        ChunkList after =
+            Chunker.split(new ByteArrayInputStream(edited), false);
+
+        assertEquals(data.length, before.size());
+        assertEquals(edited.length, after.size());
+        HashSet<String> changed = new HashSet<>(after.getShas());
+        changed.removeAll(before.getShas());
+        assertTrue(before.getShas().size() > 4);
+        assertTrue(changed.size() <= 2);
+    }
+
+    /** Test that applying a delta to its base yields its target, for
+     *  empty and short inputs, shorter than a block, and for inputs made
+     *  of repeated blocks. */
+    @Test
+    public void deltaRoundTripTest() {
+        byte[] empty = new byte[0];
+        byte[] pattern = "0123456789abcdef".getBytes();
+        byte[] repeated = new byte[pattern.length * 64];
+        for (int i = 0; i < repeated.length; i += 1) {
+            repeated[i] = pattern[i % pattern.length];
+        }
+        byte[] changed = Arrays.copyOf(repeated, repeated.length + 40);
+        changed[repeated.length / 2] = 'X';
+        for (int i = repeated.length; i < changed.length; i += 1) {
+            changed[i] = pattern[i % pattern.length];
+        }
+        byte[][][] cases = {
+            {empty, empty}, {empty, "short".getBytes()},
+            {"short".getBytes(), empty},
+            {"short".getBytes(), "shorter".getBytes()},
+            {repeated, repeated}, {repeated, changed}, {changed, repeated},
+            {empty, repeated}, {"short".getBytes(), repeated},
+        };
+        for (byte[][] c : cases) {
+            byte[] delta = Delta.create(new Delta.Index(c[0]), c[1],
+                    Integer.MAX_VALUE);
+            assertNotNull(delta);
+            assertArrayEquals(c[1], Delta.apply(c[0], delta));
+        }
+        byte[] delta = Delta.create(new Delta.Index(repeated), changed,
+                Integer.MAX_VALUE);
+        assertTrue(delta.length < changed.length / 4);
+    }
+
+    /** Test that the journal replays the changes saved onto the
+     *  checkpoint, and that an entry cut short is dropped and cut off. */
+    @Test
+    public void journalReplayTest() throws IOException {
+        inScratchRepository(() -> {
+            Commit initial = new Commit("initial commit",
+                    LocalDateTime.ofInstant(Instant.EPOCH, ZoneId.of("UTC")),
+                    "");
+            Journal.checkpoint(new Tracker("master", initial));
+            File journal = new File(Utils.gitletPath(Journal.JOURNAL_FILE));
+
+            Tracker tracker = Journal.open();
+            tracker.stage("a.txt", Utils.sha1("a"));
+            tracker.addBranch("other");
+            Journal.save(tracker);
+            long saved = journal.length();
 
+            tracker = Journal.open();
+            assertEquals(Utils.sha1("a"),
+                         tracker.getStagingArea().get("a.txt"));
+            assertTrue(tracker.branchNameExists("other"));
+            tracker.stage("b.txt", Utils.sha1("b"));
+            Journal.save(tracker);
+            try (FileChannel out = FileChannel.open(journal.toPath(),
+                    StandardOpenOption.WRITE)) {
+                out.truncate(journal.length() - 1);
+            }
 
+            tracker = Journal.open();
+            assertTrue(tracker.isStaged("a.txt"));
+            assertFalse(tracker.isStaged("b.txt"));
+            assertEquals(saved, journal.length());
+        });
+    }
+
+    /** Test that the commit graph reads back the records written and
+     *  appended, and that it drops an inconsistent record and those after
+     *  it. */
+    @Test
+    public void commitGraphReplayTest() throws IOException {
+        inScratchRepository(() -> {
+            try {
+                String[] shas = new String[4];
+                String parent = "";
+                for (int i = 0; i < shas.length; i += 1) {
+                    shas[i] = Utils.sha1("commit " + i);
+                    Commit commit = new Commit("commit " + i,
+                            LocalDateTime.ofEpochSecond(i, 0, ZoneOffset.UTC),
+                            parent);
+                    if (i < 3) {
+                        CommitGraph.get().add(shas[i], commit);
+                    } else {
+                        CommitGraph.saveIfChanged();
+                        CommitGraph.reset();
+                        CommitGraph.append(shas[i], commit);
+                    }
+                    parent = shas[i];
+                }
+                CommitGraph.saveIfChanged();
+                CommitGraph.reset();
+                File file = new File(Utils.gitletPath(CommitGraph.GRAPH_FILE));
+                assertEquals(8 + 4 * CommitGraph.RECORD_SIZE, file.length());
+
+                CommitGraph graph = CommitGraph.get();
+                assertEquals(4, graph.size());
+                for (int k = 0; k < shas.length; k += 1) {
+                    assertEquals(k, graph.find(shas[k]));
+                    assertEquals(k - 1, graph.parent(k));
+                    assertEquals(k + 1, graph.generation(k));
+                }
+
+                try (FileChannel out = FileChannel.open(file.toPath(),
+                        StandardOpenOption.WRITE)) {
+                    out.write(ByteBuffer.allocate(4).putInt(0, 7),
+                              8 + CommitGraph.RECORD_SIZE + 40);
+                }
+                CommitGraph.reset();
+                graph = CommitGraph.get();
+                assertEquals(1, graph.size());
+                assertEquals(-1, graph.find(shas[1]));
+                assertEquals(8 + CommitGraph.RECORD_SIZE, file.length());
+            } finally {
+                CommitGraph.reset();
+            }
+        });
+    }
+
+    /** Test that add operands are named from the working directory, and
+     *  that trees refuse paths that leave their directory. */
+    @Test
+    public void pathNormalizationTest() {
+        String root = new File("").getAbsolutePath();
+        assertEquals("a.txt", AddCommand.normalize("./a.txt"));
+        assertEquals("sub/c.txt", AddCommand.normalize("./sub/c.txt"));
+        assertEquals("sub", AddCommand.normalize("./sub/"));
+        assertEquals("sub", AddCommand.normalize("sub/x/.."));
+        assertEquals("a.txt", AddCommand.normalize("sub/../a.txt"));
+        assertEquals("a.txt", AddCommand.normalize(root + "/a.txt"));
+        assertEquals("", AddCommand.normalize("."));
+        assertTrue(refused(() -> AddCommand.normalize("../x")));
+        assertTrue(refused(() -> AddCommand.normalize("sub/../../x")));
+        assertTrue(refused(() -> AddCommand.normalize("/x")));
+        assertTrue(refused(() -> AddCommand.normalize("./.gitlet/x")));
+
+        String sha = Utils.sha1("c");
+        assertTrue(refused(() -> Tree.write(Map.of("./c.txt", sha))));
+        assertTrue(refused(() -> Tree.write(Map.of("../c.txt", sha))));
+        assertTrue(refused(() -> Tree.write(Map.of("sub/../c.txt", sha))));
+        assertTrue(refused(() -> Tree.write(Map.of("sub//c.txt", sha))));
+    }
+
+    /** Test that the object cache counts the lookups it answers and those
+     *  it cannot. */
+    @Test
+    public void objectCacheCountersTest() throws IOException {
+        inScratchRepository(() -> {
+            Commit commit = new Commit("cached",
+                    LocalDateTime.ofEpochSecond(1, 0, ZoneOffset.UTC), "");
+            String sha = Utils.writeObject(commit);
+            long hits = ObjectCache.hits();
+            long misses = ObjectCache.misses();
+            Utils.shaToCommit(sha);
+            assertEquals(misses + 1, ObjectCache.misses());
+            assertEquals(hits, ObjectCache.hits());
+            Utils.shaToCommit(sha);
+            assertEquals(misses + 1, ObjectCache.misses());
+            assertEquals(hits + 1, ObjectCache.hits());
+        });
+    }
+
+    /** Test that hashing files together leaves out one that is gone
+     *  instead of failing. */
+    @Test
+    public void vanishedFileTest() throws IOException {
+        inScratchRepository(() -> {
+            try {
+                String name = "gitlet-vanished-" + System.nanoTime();
+                assertTrue(StatCache.get().hashAll(List.of(name)).isEmpty());
+                assertTrue(StatCache.get().storeAll(List.of(name)).isEmpty());
+            } finally {
+                StatCache.reset();
+            }
+        });
+    }
+
+    /** Test that the literals a regular expression requires of a match
+     *  are found, and none where a match need hold none. */
+    @Test
+    public void regexLiteralsTest() {
+        assertEquals(Arrays.asList("abc", "def"),
+                MessageIndex.requiredLiterals("abc.*def"));
+        assertEquals(Arrays.asList("foo.bar"),
+                MessageIndex.requiredLiterals("foo\\.bar"));
+        assertEquals(Arrays.asList("yzw"),
+                MessageIndex.requiredLiterals("x{2,3}yzw"));
+        assertEquals(Arrays.asList("abc"),
+                MessageIndex.requiredLiterals("abcd?ef(ghi)*"));
+        assertTrue(MessageIndex.requiredLiterals("abcd|efgh").isEmpty());
+        assertEquals(Arrays.asList("bcd"),
+                MessageIndex.requiredLiterals("\\x41bcd"));
+        assertEquals(Arrays.asList("bcde"),
+                MessageIndex.requiredLiterals("\\x{41}bcde"));
+        assertEquals(Arrays.asList("bcd"),
+                MessageIndex.requiredLiterals("\\u0041bcd"));
+        assertEquals(Arrays.asList("bcd"),
+                MessageIndex.requiredLiterals("\\0101bcd"));
+        assertEquals(Arrays.asList("4bcd"),
+                MessageIndex.requiredLiterals("\\0774bcd"));
+        assertEquals(Arrays.asList("bcd"),
+                MessageIndex.requiredLiterals("\\cAbcd"));
+        assertEquals(Arrays.asList("abc"),
+                MessageIndex.requiredLiterals("\\p{Lu}abc"));
+    }
+
+    /** Return true iff ACTION fails with a GitletException. */
+    private static boolean refused(Runnable action) {
+        try {
+            action.run();
+            return false;
+        } catch (GitletException excp) {
+            return true;
+        }
+    }
+
+    /** A test run in a scratch repository. */
+    private interface RepositoryTest {
+        /** Run the test. */
+        void run() throws IOException;
+    }
+
+    /** Run TEST with a fresh .gitlet directory in the working directory,
+     *  which must not hold a repository already, and delete it
+     *  afterwards. */
+    private static void inScratchRepository(RepositoryTest test)
+        throws IOException {
+        File dir = new File(Utils.gitletPath(""));
+        assertTrue("unit tests must not be run within a repository",
+                !dir.exists());
+        dir.mkdir();
+        try {
+            test.run();
+        } finally {
+            delete(dir);
+        }
+    }
+
+    /** Delete FILE, and everything in it if it is a directory. */
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+}
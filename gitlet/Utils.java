@@ -9,13 +9,16 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
-import java.util.Formatter;
 import java.util.HashSet;
 import java.util.List;
 
@@ -33,49 +36,66 @@ class Utils {
     /** Returns the SHA-1 hash of the concatenation of VALS, which may
      *  be any mixture of byte arrays and Strings. */
     static String sha1(Object... vals) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("SHA-1");
-            for (Object val : vals) {
-                if (val instanceof byte[]) {
-                    md.update((byte[]) val);
-                } else if (val instanceof String) {
-                    md.update(((String) val).getBytes(StandardCharsets.UTF_8));
-                } else {
-                    throw new IllegalArgumentException("improper type to sha1");
-                }
+        MessageDigest md = newSha1();
+        for (Object val : vals) {
+            if (val instanceof byte[]) {
+                md.update((byte[]) val);
+            } else if (val instanceof String) {
+                md.update(((String) val).getBytes(StandardCharsets.UTF_8));
+            } else {
+                throw new IllegalArgumentException("improper type to sha1");
             }
-            Formatter result = new Formatter();
-            for (byte b : md.digest()) {
-                result.format("%02x", b);
-            }
-            return result.toString();
+        }
+        return toHex(md.digest());
+    }
+
+    /** Return a fresh SHA-1 message digest. */
+    static MessageDigest newSha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
         } catch (NoSuchAlgorithmException excp) {
             throw new IllegalArgumentException("System does not support SHA-1");
         }
     }
 
+    /** SHA-1 message digests for hashing files, one per thread. */
+    private static final ThreadLocal<MessageDigest> FILE_DIGESTS =
+        ThreadLocal.withInitial(Utils::newSha1);
+
+    /** Return this thread's SHA-1 message digest for hashing files, reset.
+     *  It must be finished with before the thread asks for it again. */
+    static MessageDigest fileSha1() {
+        MessageDigest md = FILE_DIGESTS.get();
+        md.reset();
+        return md;
+    }
+
+    /** Return BYTES as a lower-case hexadecimal numeral. */
+    static String toHex(byte[] bytes) {
+        return toHex(bytes, 0, bytes.length);
+    }
+
+    /** Return the LEN bytes of BYTES starting at OFFSET as a lower-case
+     *  hexadecimal numeral. */
+    static String toHex(byte[] bytes, int offset, int len) {
+        char[] result = new char[2 * len];
+        for (int i = 0; i < len; i += 1) {
+            int b = bytes[offset + i] & 0xff;
+            result[2 * i] = HEX_DIGITS[b >>> 4];
+            result[2 * i + 1] = HEX_DIGITS[b & 0xf];
+        }
+        return new String(result);
+    }
+
+    /** The hexadecimal digits. */
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
     /** Returns the SHA-1 hash of the concatenation of the strings in
      *  VALS. */
     static String sha1(List<Object> vals) {
         return sha1(vals.toArray(new Object[vals.size()]));
     }
 
-    /** Return the full Sha of a possibly abbreviated SHA commit ID
-     *  Used in checkout and reset. */
-    static String fullSha(String sha) {
-        if (sha.length() != UID_LENGTH) {
-            File[] gitletDirectoryListing
-                    = (new File(gitletPath("."))).listFiles();
-            for (File F : gitletDirectoryListing) {
-                String fullSha = F.getName();
-                if (fullSha.startsWith(sha)) {
-                    return fullSha;
-                }
-            }
-        }
-        return sha;
-    }
-
     /* FILE DELETION */
 
     /** Deletes FILE if it exists and is not a directory.  Returns true
@@ -105,14 +125,12 @@ class Utils {
 
     /** Given the COMMITSHA of a commit,return the associated commit. */
     static Commit shaToCommit(String commitSha) {
-        return Utils.readObject(
-                new File(Utils.gitletPath(commitSha)), Commit.class);
+        return ObjectCache.commit(commitSha);
     }
 
     /** Given the BLOBSHA reference of a blob, return the associated blob. */
     static Blob shaToBlob(String blobSha) {
-        return Utils.readObject(
-                new File(Utils.gitletPath(blobSha)), Blob.class);
+        return new Blob(ObjectCache.blob(blobSha));
     }
 
     /** Return the path of a file S within the .gitlet directory. */
@@ -125,18 +143,47 @@ class Utils {
         return (fileName);
     }
 
-    /** Return a set of the FILENAMES in the working directory. */
+    /** Return a set of the FILENAMES in the working directory, as known
+     *  to the file system monitor if one is running. */
     static HashSet<String> workingDirFileNames() {
+        FsMonitor snapshot = FsMonitor.snapshot();
+        if (snapshot != null) {
+            return new HashSet<>(snapshot.fileNames());
+        }
+        return scanWorkingDir();
+    }
+
+    /** Return a set of the FILENAMES in the working directory, listing
+     *  it and its subdirectories.  The files of a subdirectory are named
+     *  by their paths, as in a commit's trees (see Tree).  Names starting
+     *  with "." are skipped, and so is everything beneath them. */
+    static HashSet<String> scanWorkingDir() {
         HashSet<String> workingDirFileNames = new HashSet<>();
-        File[] workingDirListing = (
-                new File(Utils.workingDirPath("."))).listFiles();
+        scanWorkingDir(new File(Utils.workingDirPath(".")), "",
+                workingDirFileNames);
+        return workingDirFileNames;
+    }
+
+    /** Add the names of the files under DIR, whose path is PREFIX, to
+     *  WORKINGDIRFILENAMES. */
+    static void scanWorkingDir(
+            File dir, String prefix, HashSet<String> workingDirFileNames) {
+        File[] workingDirListing = dir.listFiles();
+        if (workingDirListing == null) {
+            return;
+        }
         for (File F : workingDirListing) {
             String fileName = F.getName();
-            if (!fileName.startsWith(".")) {
-                workingDirFileNames.add(F.getName());
+            if (fileName.startsWith(".")) {
+                continue;
+            }
+            if (F.isDirectory()) {
+                scanWorkingDir(F, prefix + fileName + Tree.SEPARATOR,
+                        workingDirFileNames);
+            } else {
+                workingDirFileNames.add(prefix + fileName);
             }
         }
-        return workingDirFileNames;
     }
 
     /** Return the entire contents of FILE as a byte array.  FILE must
@@ -185,6 +232,30 @@ class Utils {
         }
     }
 
+    /** Replace FILE with one holding CONTENTS, by way of a temporary file
+     *  that is forced to disk and then renamed over FILE, so that FILE
+     *  always holds either its old contents or CONTENTS, even after a
+     *  crash.  Throws IllegalArgumentException in case of problems. */
+    static void writeContentsAtomically(File file, byte[] contents) {
+        File temp = new File(file.getPath() + ".new");
+        try {
+            try (FileChannel out = FileChannel.open(temp.toPath(),
+                    StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buf = ByteBuffer.wrap(contents);
+                while (buf.hasRemaining()) {
+                    out.write(buf);
+                }
+                out.force(false);
+            }
+            Files.move(temp.toPath(), file.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
     /** Return an object of type T read from FILE, casting it to EXPECTEDCLASS.
      *  Throws IllegalArgumentException in case of problems. */
     static <T extends Serializable> T readObject(
@@ -206,9 +277,16 @@ class Utils {
         writeContents(file, serialize(obj));
     }
 
-    /** Write OBJ to a new file in the .gitlet directory. */
-    static void writeObject(Serializable obj) {
-        writeObject(new File(gitletPath(sha1(serialize(obj)))), obj);
+    /** Write COMMIT to the object store, unless it is already there, and
+     *  return its SHA. */
+    static String writeObject(Commit commit) {
+        return ObjectStore.write(Codec.encode(commit));
+    }
+
+    /** Write BLOB to the object store, unless it is already there, and
+     *  return its SHA.  A large blob is stored as a chunk list. */
+    static String writeObject(Blob blob) {
+        return ObjectStore.writeBlob(blob.getContents());
     }
 
     /* DIRECTORIES */
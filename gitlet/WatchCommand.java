@@ -0,0 +1,21 @@
+package gitlet;
+
+import java.io.Serializable;
+
+/** The watch command: runs the file system monitor in the foreground,
+ *  keeping a live listing of the working directory for other commands.
+ *  @author Ryan Brill
+ */
+class WatchCommand implements Command, Serializable {
+
+    /** Return true iff N is the proper number of operands for this command. */
+    public boolean properNumOperands(int n) {
+        return n == 1;
+    }
+
+    /** Execute this command, using TRACKER. */
+    public void execute(Tracker tracker) {
+        FsMonitor.watch();
+    }
+
+}